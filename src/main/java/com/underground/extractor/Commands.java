@@ -1,26 +1,117 @@
 package com.underground.extractor;
 
+import com.underground.extractor.cluster.ClusterSearch;
+import com.underground.extractor.handler.EntryFilter;
+import com.underground.extractor.service.ArchiveWatcher;
+import com.underground.extractor.service.ExtractionOptions;
 import com.underground.extractor.service.ExtractorService;
 import org.springframework.shell.standard.ShellComponent;
 import org.springframework.shell.standard.ShellMethod;
 import org.springframework.shell.standard.ShellOption;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
 @ShellComponent
 public class Commands {
 
     private final ExtractorService extractorService;
+    private final ArchiveWatcher archiveWatcher;
+    private final ClusterSearch clusterSearch;
 
 
-    public Commands(ExtractorService extractorService) {
+    public Commands(ExtractorService extractorService, ArchiveWatcher archiveWatcher, ClusterSearch clusterSearch) {
         this.extractorService = extractorService;
+        this.archiveWatcher = archiveWatcher;
+        this.clusterSearch = clusterSearch;
     }
 
     @ShellMethod()
     public void extract(@ShellOption(value = "inDir") String inputDir,
                         @ShellOption(value = "outDir") String outputDir,
-                        @ShellOption(value = "pwFile") String passwordsFile,
-                        @ShellOption(value = "rem") boolean removeAfterExtraction) {
-        extractorService.extract(inputDir, outputDir, passwordsFile, removeAfterExtraction);
+                        @ShellOption(value = "pwFile", defaultValue = ShellOption.NULL) String passwordsFile,
+                        @ShellOption(value = "rem") boolean removeAfterExtraction,
+                        @ShellOption(value = "threads", defaultValue = "1") int threads,
+                        @ShellOption(value = "searchThreads", defaultValue = "1") int searchThreads,
+                        @ShellOption(value = "volumeWait", defaultValue = "0") int volumeWaitSeconds,
+                        @ShellOption(value = "rules", defaultValue = ShellOption.NULL) String rulesFile,
+                        @ShellOption(value = "mask", defaultValue = ShellOption.NULL) String mask,
+                        @ShellOption(value = "maskOffset", defaultValue = "0") long maskOffset,
+                        @ShellOption(value = "maskCount", defaultValue = "-1") long maskCount,
+                        @ShellOption(value = "statsFile", defaultValue = ShellOption.NULL) String statsFile,
+                        @ShellOption(value = "leaseSeconds", defaultValue = "0") int leaseSeconds,
+                        @ShellOption(value = "index", defaultValue = ShellOption.NULL) String indexFile,
+                        @ShellOption(value = "include", defaultValue = ShellOption.NULL) String[] includes,
+                        @ShellOption(value = "exclude", defaultValue = ShellOption.NULL) String[] excludes,
+                        @ShellOption(value = "minSize", defaultValue = "0") long minSize,
+                        @ShellOption(value = "maxSize", defaultValue = "-1") long maxSize,
+                        @ShellOption(value = "ext", defaultValue = ShellOption.NULL) String[] extensions) {
+        if (passwordsFile == null && mask == null) {
+            throw new IllegalArgumentException("Either --pwFile or --mask is needed");
+        }
+        var options = ExtractionOptions.builder()
+                .threads(threads)
+                .searchThreads(searchThreads)
+                .volumeWaitSeconds(volumeWaitSeconds)
+                .rulesFile(rulesFile)
+                .mask(mask)
+                .maskOffset(maskOffset)
+                .maskCount(maskCount)
+                .statsFile(statsFile)
+                .leaseSeconds(leaseSeconds)
+                .indexFile(indexFile)
+                .entryFilter(new EntryFilter(list(includes), list(excludes), minSize, maxSize, list(extensions)))
+                .build();
+        extractorService.extract(inputDir, outputDir, passwordsFile, removeAfterExtraction, options);
+    }
+
+    @ShellMethod()
+    public void watch(@ShellOption(value = "inDir") String inputDir,
+                      @ShellOption(value = "outDir") String outputDir,
+                      @ShellOption(value = "pwFile") String passwordsFile,
+                      @ShellOption(value = "rem") boolean removeAfterExtraction,
+                      @ShellOption(value = "threads", defaultValue = "1") int threads,
+                      @ShellOption(value = "searchThreads", defaultValue = "1") int searchThreads,
+                      @ShellOption(value = "quiet", defaultValue = "5") int quietSeconds,
+                      @ShellOption(value = "rules", defaultValue = ShellOption.NULL) String rulesFile,
+                      @ShellOption(value = "statsFile", defaultValue = ShellOption.NULL) String statsFile,
+                      @ShellOption(value = "leaseSeconds", defaultValue = "0") int leaseSeconds,
+                      @ShellOption(value = "index", defaultValue = ShellOption.NULL) String indexFile) throws IOException {
+        var options = ExtractionOptions.builder()
+                .threads(threads)
+                .searchThreads(searchThreads)
+                .rulesFile(rulesFile)
+                .statsFile(statsFile)
+                .leaseSeconds(leaseSeconds)
+                .indexFile(indexFile)
+                .build();
+        archiveWatcher.watch(inputDir, outputDir, passwordsFile, removeAfterExtraction, options, Duration.ofSeconds(quietSeconds));
+    }
+
+    @ShellMethod()
+    public void coordinate(@ShellOption(value = "archive") String archive,
+                           @ShellOption(value = "outDir", defaultValue = ShellOption.NULL) String outputDir,
+                           @ShellOption(value = "pwFile", defaultValue = ShellOption.NULL) String passwordsFile,
+                           @ShellOption(value = "mask", defaultValue = ShellOption.NULL) String mask,
+                           @ShellOption(value = "maskOffset", defaultValue = "0") long maskOffset,
+                           @ShellOption(value = "maskCount", defaultValue = "-1") long maskCount,
+                           @ShellOption(value = "bind", defaultValue = "127.0.0.1") String bindAddress,
+                           @ShellOption(value = "port", defaultValue = "7373") int port) throws IOException, InterruptedException {
+        if (passwordsFile == null && mask == null) {
+            throw new IllegalArgumentException("Either --pwFile or --mask is needed");
+        }
+        clusterSearch.coordinate(archive, outputDir, passwordsFile, mask, maskOffset, maskCount, bindAddress, port);
     }
-    
+
+    @ShellMethod()
+    public void work(@ShellOption(value = "host", defaultValue = "localhost") String host,
+                     @ShellOption(value = "port", defaultValue = "7373") int port) throws IOException, InterruptedException {
+        clusterSearch.work(host, port);
+    }
+
+    private static List<String> list(String[] values) {
+        return values == null ? List.of() : List.of(values);
+    }
+
 }
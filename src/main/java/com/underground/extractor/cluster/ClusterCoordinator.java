@@ -0,0 +1,315 @@
+package com.underground.extractor.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Hands out the keyspace of a {@link Job} to workers connecting over the {@link Protocol}, in leases of
+ * {@value #LEASES_PER_KEYSPACE}th of the keyspace. Once everything is handed out, an idle worker takes over the
+ * second half of the lease with the most left, whose worker learns about its new end with its next progress report.
+ * The lease of a worker which fails or disconnects is handed out again. The search ends with the first password
+ * found which opens the archive, or once the whole keyspace was searched.
+ */
+public class ClusterCoordinator implements Closeable {
+
+    static final int LEASES_PER_KEYSPACE = 256;
+
+    /**
+     * How long the workers get to learn that the search is over, before their connections are closed
+     */
+    private static final long STOP_GRACE_MILLIS = 10_000;
+
+    Logger logger = LoggerFactory.getLogger(ClusterCoordinator.class);
+
+    private final ServerSocket server;
+    private final Job job;
+    /**
+     * Tests whether a password a worker found opens the archive
+     */
+    private final Predicate<String> verifier;
+    private final long leaseSize;
+    private final ExecutorService connections = Executors.newCachedThreadPool();
+
+    /**
+     * Start of the part of the keyspace never handed out
+     */
+    private long next;
+    /**
+     * Ranges given back by workers which failed or disconnected
+     */
+    private final Deque<Lease> returned = new ArrayDeque<>();
+    private final Map<Protocol.Connection, Lease> leases = new HashMap<>();
+    private final Map<Protocol.Connection, Long> attempts = new HashMap<>();
+    private String password;
+    private String failure;
+    private boolean finished;
+
+    public ClusterCoordinator(ServerSocket server, Job job, Predicate<String> verifier) {
+        this.server = server;
+        this.job = job;
+        this.verifier = verifier;
+        this.leaseSize = Math.max(1, (job.to() - job.from()) / LEASES_PER_KEYSPACE);
+        this.next = job.from();
+    }
+
+    /**
+     * @param bindAddress the address to accept workers on, workers aren't authenticated
+     */
+    public static ClusterCoordinator listen(InetAddress bindAddress, int port, Job job, Predicate<String> verifier)
+            throws IOException {
+        return new ClusterCoordinator(new ServerSocket(port, 0, bindAddress), job, verifier);
+    }
+
+    public int port() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Accepts workers until the search is over.
+     */
+    public SearchResult run() throws InterruptedException {
+        Thread acceptor = new Thread(this::accept, "cluster-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        synchronized (this) {
+            while (!finished) {
+                wait();
+            }
+        }
+        try {
+            server.close();
+        } catch (IOException e) {
+            logger.warn("Could not close the server socket: {}", e.getMessage());
+        }
+        // the workers are told to stop with the answer to their next message
+        connections.shutdown();
+        if (!connections.awaitTermination(STOP_GRACE_MILLIS, TimeUnit.MILLISECONDS)) {
+            closeConnections();
+            connections.shutdownNow();
+        }
+        synchronized (this) {
+            return new SearchResult(password, attempts.values().stream().mapToLong(Long::longValue).sum(),
+                    password == null ? failure : null);
+        }
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                try {
+                    connections.execute(() -> serve(socket));
+                } catch (RejectedExecutionException e) {
+                    // the search ended meanwhile
+                    socket.close();
+                }
+            } catch (SocketException e) {
+                // closed once the search is over
+            } catch (IOException e) {
+                logger.warn("Could not accept a worker: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        Protocol.Connection connection;
+        try {
+            connection = new Protocol.Connection(socket);
+        } catch (IOException e) {
+            logger.warn("Could not talk to a worker: {}", e.getMessage());
+            return;
+        }
+        synchronized (this) {
+            leases.put(connection, null);
+        }
+        logger.info("Worker {} connected", connection.remote());
+        try (connection) {
+            List<String> message;
+            while ((message = connection.receive()) != null) {
+                List<Object> answer = message.get(0).equals(Protocol.FOUND)
+                        ? found(connection, message)
+                        : answer(connection, message);
+                connection.send(answer.toArray());
+                if (answer.get(0).equals(Protocol.STOP)) {
+                    break;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Lost worker {}: {}", connection.remote(), e.getMessage());
+        } finally {
+            disconnected(connection);
+        }
+    }
+
+    private synchronized List<Object> answer(Protocol.Connection connection, List<String> message) {
+        String type = message.get(0);
+        if (message.size() > 1 && !type.equals(Protocol.HELLO)) {
+            attempts.put(connection, Long.parseLong(message.get(1)));
+        }
+        switch (type) {
+            case Protocol.HELLO -> {
+                return finished ? List.of(Protocol.STOP)
+                        : List.of(Protocol.JOB, job.archive().getAbsolutePath(), job.multipart(), job.kind(), job.spec());
+            }
+            case Protocol.LEASE -> {
+                // a worker asks for a new lease only once it searched its current one
+                leases.put(connection, null);
+                return lease(connection);
+            }
+            case Protocol.PROGRESS -> {
+                Lease lease = leases.get(connection);
+                if (finished || lease == null) {
+                    return List.of(Protocol.STOP);
+                }
+                lease.position = Math.max(lease.position, Long.parseLong(message.get(2)));
+                return List.of(Protocol.END, lease.end);
+            }
+            case Protocol.FAILED -> {
+                logger.warn("Worker {} failed: {}", connection.remote(), message.get(2));
+                failure = message.get(2);
+                giveBack(connection);
+                return List.of(Protocol.STOP);
+            }
+            default -> {
+                logger.warn("Unknown message from {}: {}", connection.remote(), type);
+                return List.of(Protocol.STOP);
+            }
+        }
+    }
+
+    /**
+     * Ends the search if the password found opens the archive, else the worker searches on.
+     */
+    private List<Object> found(Protocol.Connection connection, List<String> message) {
+        synchronized (this) {
+            attempts.put(connection, Long.parseLong(message.get(1)));
+            if (finished) {
+                return List.of(Protocol.STOP);
+            }
+        }
+        // testing the archive takes a while, the other workers are served meanwhile
+        boolean opens = verifier.test(message.get(2));
+        synchronized (this) {
+            if (!opens) {
+                logger.warn("Worker {} found a password which doesn't open the archive", connection.remote());
+                Lease lease = leases.get(connection);
+                return finished || lease == null ? List.of(Protocol.STOP) : List.of(Protocol.END, lease.end);
+            }
+            if (password == null) {
+                password = message.get(2);
+                logger.info("Worker {} found the password", connection.remote());
+            }
+            finish();
+            return List.of(Protocol.STOP);
+        }
+    }
+
+    private List<Object> lease(Protocol.Connection connection) {
+        if (finished) {
+            return List.of(Protocol.STOP);
+        }
+        Lease lease;
+        if (!returned.isEmpty()) {
+            lease = returned.poll();
+        } else if (next < job.to()) {
+            lease = new Lease(next, Math.min(job.to(), next + leaseSize));
+            next = lease.end;
+        } else {
+            lease = steal();
+        }
+        if (lease == null) {
+            if (leases.values().stream().allMatch(active -> active == null)) {
+                logger.info("Keyspace searched");
+                finish();
+                return List.of(Protocol.STOP);
+            }
+            return List.of(Protocol.WAIT);
+        }
+        leases.put(connection, lease);
+        return List.of(Protocol.RANGE, lease.position, lease.end);
+    }
+
+    /**
+     * Takes over the second half of the lease with the most left
+     */
+    private Lease steal() {
+        Lease victim = leases.values().stream()
+                .filter(lease -> lease != null && lease.end - lease.position > 1)
+                .max((a, b) -> Long.compare(a.end - a.position, b.end - b.position))
+                .orElse(null);
+        if (victim == null) {
+            return null;
+        }
+        long middle = victim.position + (victim.end - victim.position) / 2;
+        Lease stolen = new Lease(middle, victim.end);
+        victim.end = middle;
+        return stolen;
+    }
+
+    private void giveBack(Protocol.Connection connection) {
+        Lease lease = leases.put(connection, null);
+        if (lease != null && lease.position < lease.end) {
+            returned.add(lease);
+        }
+    }
+
+    private synchronized void disconnected(Protocol.Connection connection) {
+        giveBack(connection);
+        leases.remove(connection);
+        // nobody left to search what a failed worker gave back
+        if (leases.isEmpty() && failure != null && !finished) {
+            finish();
+        }
+    }
+
+    private void finish() {
+        finished = true;
+        notifyAll();
+    }
+
+    private synchronized void closeConnections() {
+        for (Protocol.Connection connection : leases.keySet()) {
+            try {
+                connection.close();
+            } catch (IOException e) {
+                logger.warn("Could not close the connection to {}: {}", connection.remote(), e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        connections.shutdownNow();
+    }
+
+    /**
+     * Part of the keyspace a worker searches, {@code position} is where it got to as of its last report
+     */
+    private static class Lease {
+        private long position;
+        private long end;
+
+        Lease(long position, long end) {
+            this.position = position;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.underground.extractor.cluster;
+
+import com.underground.extractor.handler.IArchiveExtractor;
+import com.underground.extractor.password.MaskSource;
+import com.underground.extractor.volume.VolumeSets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+
+/**
+ * Searches the password of a single archive with workers in several processes, possibly on several machines.
+ * One process coordinates and extracts the archive once the password is found, the others work.
+ */
+@Service
+public class ClusterSearch {
+
+    private final IArchiveExtractor archiveExtractor;
+    Logger logger = LoggerFactory.getLogger(ClusterSearch.class);
+
+    public ClusterSearch(IArchiveExtractor archiveExtractor) {
+        this.archiveExtractor = archiveExtractor;
+    }
+
+    /**
+     * Leases out either the lines of the wordlist or the candidates of the mask, then extracts the archive
+     * with the password found.
+     *
+     * @param outputDir   {@code null} to only find the password
+     * @param bindAddress the address to accept workers on, they aren't authenticated
+     */
+    public SearchResult coordinate(String archivePath, String outputDir, String passwordsFile, String mask,
+                                   long maskOffset, long maskCount, String bindAddress, int port)
+            throws IOException, InterruptedException {
+        // the workers open the archive by this path, whatever their working directory
+        File archive = new File(archivePath).getAbsoluteFile();
+        File firstVolume = VolumeSets.firstVolume(archive);
+        boolean multipart = firstVolume != null;
+        if (multipart) {
+            archive = firstVolume;
+        }
+        Job job;
+        if (mask != null) {
+            MaskSource source = new MaskSource(mask, maskOffset, maskCount);
+            long to = maskCount < 0 ? source.keyspace() : Math.min(source.keyspace(), maskOffset + maskCount);
+            job = new Job(archive, multipart, Job.Kind.MASK, mask, maskOffset, to);
+        } else {
+            job = new Job(archive, multipart, Job.Kind.WORDLIST, new File(passwordsFile).getAbsolutePath(),
+                    0, new File(passwordsFile).length());
+        }
+
+        SearchResult result;
+        try (var coordinator = ClusterCoordinator.listen(InetAddress.getByName(bindAddress), port, job,
+                password -> opens(job, password))) {
+            logger.info("Coordinating the search of {} on {}:{}, positions {} to {}", archive.getName(),
+                    bindAddress, coordinator.port(), job.from(), job.to());
+            result = coordinator.run();
+        }
+        if (result.password() == null) {
+            logger.warn("No suitable password for {} after {} attempts{}", archive.getName(), result.attempts(),
+                    result.failure() != null ? ": " + result.failure() : "");
+            return result;
+        }
+        logger.info("Found the password of {} after {} attempts", archive.getName(), result.attempts());
+        if (outputDir != null) {
+            try {
+                boolean extractionOK = multipart
+                        ? archiveExtractor.extractMultipartArchive(archive, result.password(), outputDir)
+                        : archiveExtractor.extractArchive(archive, result.password(), outputDir);
+                if (extractionOK) {
+                    logger.info("Successfully finished extracting {}", archive.getName());
+                } else {
+                    logger.warn("Could not finish extracting {}", archive.getName());
+                }
+            } catch (Exception e) {
+                logger.warn("Unforeseen exception: {}", e.getMessage());
+            } finally {
+                archiveExtractor.release(archive);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Tests the password a worker found, before the search ends with it.
+     */
+    private boolean opens(Job job, String password) {
+        try {
+            return job.multipart()
+                    ? archiveExtractor.testMultipartArchive(job.archive(), password)
+                    : archiveExtractor.testArchive(job.archive(), password);
+        } catch (Exception e) {
+            logger.debug("Password found doesn't open {}: {}", job.archive().getName(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Works for the coordinator until it tells to stop.
+     */
+    public void work(String host, int port) throws IOException, InterruptedException {
+        new ClusterWorker(archiveExtractor, ClusterWorker.DEFAULT_REPORT_MILLIS).work(host, port);
+    }
+}
@@ -0,0 +1,159 @@
+package com.underground.extractor.cluster;
+
+import com.underground.extractor.handler.AttemptResult;
+import com.underground.extractor.handler.IArchiveExtractor;
+import com.underground.extractor.handler.IAttemptSession;
+import com.underground.extractor.password.Keyspace;
+import com.underground.extractor.password.MappedWordlist;
+import com.underground.extractor.password.MaskSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Searches the ranges of the keyspace a {@link ClusterCoordinator} leases out, trying the candidates with an
+ * {@link IAttemptSession} like a search within a single process. The progress is reported at least every
+ * {@code reportMillis}, the answer tells whether to go on and where the range ends by now.
+ */
+class ClusterWorker {
+
+    static final long DEFAULT_REPORT_MILLIS = 1000;
+    private static final long WAIT_MILLIS = 500;
+
+    Logger logger = LoggerFactory.getLogger(ClusterWorker.class);
+
+    private final IArchiveExtractor archiveExtractor;
+    private final long reportMillis;
+
+    ClusterWorker(IArchiveExtractor archiveExtractor, long reportMillis) {
+        this.archiveExtractor = archiveExtractor;
+        this.reportMillis = reportMillis;
+    }
+
+    /**
+     * Searches until the coordinator tells to stop.
+     *
+     * @return the password if this worker found it, else {@code null}
+     */
+    String work(String host, int port) throws IOException, InterruptedException {
+        try (var connection = new Protocol.Connection(new Socket(host, port))) {
+            connection.send(Protocol.HELLO);
+            List<String> job = connection.receive();
+            if (job == null || !job.get(0).equals(Protocol.JOB)) {
+                return null;
+            }
+            File archive = new File(job.get(1));
+            boolean multipart = Boolean.parseBoolean(job.get(2));
+            Job.Kind kind = Job.Kind.valueOf(job.get(3));
+            logger.info("Searching password of {} for {}:{}", archive.getName(), host, port);
+            Keyspace keyspace;
+            try {
+                keyspace = kind == Job.Kind.MASK ? new MaskSource(job.get(4)).forArchive(archive.getName())
+                        : MappedWordlist.open(Path.of(job.get(4)));
+            } catch (IOException | IllegalArgumentException e) {
+                connection.send(Protocol.FAILED, 0, "Could not read " + job.get(4) + ": " + e.getMessage());
+                connection.receive();
+                return null;
+            }
+            try (var search = new Search(connection, archive, multipart, keyspace)) {
+                return search.run();
+            } finally {
+                if (keyspace instanceof Closeable closeable) {
+                    closeable.close();
+                }
+            }
+        }
+    }
+
+    private class Search implements AutoCloseable {
+        private final Protocol.Connection connection;
+        private final File archive;
+        private final boolean multipart;
+        private final Keyspace keyspace;
+        private IAttemptSession session;
+        private long attempts;
+
+        Search(Protocol.Connection connection, File archive, boolean multipart, Keyspace keyspace) {
+            this.connection = connection;
+            this.archive = archive;
+            this.multipart = multipart;
+            this.keyspace = keyspace;
+        }
+
+        String run() throws IOException, InterruptedException {
+            while (true) {
+                connection.send(Protocol.LEASE, attempts);
+                List<String> answer = connection.receive();
+                if (answer == null || answer.get(0).equals(Protocol.STOP)) {
+                    return null;
+                }
+                if (answer.get(0).equals(Protocol.WAIT)) {
+                    Thread.sleep(WAIT_MILLIS);
+                    continue;
+                }
+                long end = Long.parseLong(answer.get(2));
+                Keyspace.Cursor cursor = keyspace.cursor(Long.parseLong(answer.get(1)));
+                long reported = System.currentTimeMillis();
+                while (cursor.hasNext() && cursor.position() < end) {
+                    if (System.currentTimeMillis() - reported >= reportMillis) {
+                        connection.send(Protocol.PROGRESS, attempts, cursor.position());
+                        answer = connection.receive();
+                        if (answer == null || answer.get(0).equals(Protocol.STOP)) {
+                            return null;
+                        }
+                        // another worker may have taken over the rest of the range
+                        end = Long.parseLong(answer.get(1));
+                        reported = System.currentTimeMillis();
+                        continue;
+                    }
+                    String password = cursor.next();
+                    AttemptResult result;
+                    try {
+                        if (session == null) {
+                            session = archiveExtractor.openSession(archive, multipart);
+                        }
+                        attempts++;
+                        result = session.attempt(password);
+                    } catch (Exception e) {
+                        return failed("Could not open '" + archive + "': " + e.getMessage());
+                    }
+                    if (result == AttemptResult.OK) {
+                        logger.info("Found the password of {}", archive.getName());
+                        connection.send(Protocol.FOUND, attempts, password);
+                        answer = connection.receive();
+                        if (answer == null || answer.get(0).equals(Protocol.STOP)) {
+                            return password;
+                        }
+                        logger.warn("The coordinator could not open {} with the password found, searching on", archive.getName());
+                        end = Long.parseLong(answer.get(1));
+                        continue;
+                    }
+                    // a data or CRC error is how most wrong passwords passing the check byte show, search on
+                    if (result == AttemptResult.UNSUPPORTED) {
+                        return failed("'" + archive + "' uses a method that can't be decoded");
+                    }
+                }
+            }
+        }
+
+        private String failed(String message) throws IOException {
+            logger.warn(message);
+            connection.send(Protocol.FAILED, attempts, message);
+            connection.receive();
+            return null;
+        }
+
+        @Override
+        public void close() {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+}
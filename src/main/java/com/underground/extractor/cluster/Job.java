@@ -0,0 +1,25 @@
+package com.underground.extractor.cluster;
+
+import java.io.File;
+
+/**
+ * The password search of a single archive shared by the workers. Every worker opens the archive and the wordlist
+ * by these paths, so they have to be reachable the same way from all of them.
+ *
+ * @param spec the mask or the path of the wordlist
+ * @param from first position of the keyspace to search
+ * @param to   position after the last one to search
+ */
+public record Job(File archive, boolean multipart, Kind kind, String spec, long from, long to) {
+
+    public enum Kind {
+        /**
+         * Positions are indexes of mask candidates
+         */
+        MASK,
+        /**
+         * Positions are byte offsets of wordlist lines
+         */
+        WORDLIST
+    }
+}
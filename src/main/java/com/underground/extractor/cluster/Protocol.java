@@ -0,0 +1,115 @@
+package com.underground.extractor.cluster;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The line protocol between coordinator and workers. Every message is a line of tab separated fields, the first
+ * one naming the message, tabs, line breaks and backslashes within a field are escaped with a backslash.
+ * The worker always sends and the coordinator answers:
+ * <pre>
+ * HELLO                           JOB archive multipart kind spec | STOP
+ * LEASE attempts                  RANGE from to | WAIT | STOP
+ * PROGRESS attempts position      END to | STOP
+ * FOUND attempts password         STOP | END to
+ * FAILED attempts message         STOP
+ * </pre>
+ * {@code attempts} counts all passwords the worker tried so far, {@code END} tells the end of the current range,
+ * which moves forward if another worker took over the rest. The coordinator tests a password found on the archive,
+ * a worker whose password doesn't open it is told to go on with its range.
+ */
+final class Protocol {
+
+    static final String HELLO = "HELLO";
+    static final String JOB = "JOB";
+    static final String LEASE = "LEASE";
+    static final String RANGE = "RANGE";
+    static final String WAIT = "WAIT";
+    static final String PROGRESS = "PROGRESS";
+    static final String END = "END";
+    static final String FOUND = "FOUND";
+    static final String FAILED = "FAILED";
+    static final String STOP = "STOP";
+
+    private Protocol() {
+    }
+
+    /**
+     * A connection sending and receiving messages
+     */
+    static class Connection implements AutoCloseable {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final Writer out;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            this.out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        }
+
+        void send(Object... fields) throws IOException {
+            StringBuilder line = new StringBuilder();
+            for (Object field : fields) {
+                if (!line.isEmpty()) {
+                    line.append('\t');
+                }
+                line.append(escape(String.valueOf(field)));
+            }
+            out.write(line.append('\n').toString());
+            out.flush();
+        }
+
+        /**
+         * @return the fields of the next message, {@code null} once the other side closed the connection
+         */
+        List<String> receive() throws IOException {
+            String line = in.readLine();
+            return line == null ? null : fields(line);
+        }
+
+        String remote() {
+            return String.valueOf(socket.getRemoteSocketAddress());
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    static String escape(String field) {
+        return field.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    static List<String> fields(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\t') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\\' && i + 1 < line.length()) {
+                char escaped = line.charAt(++i);
+                field.append(switch (escaped) {
+                    case 't' -> '\t';
+                    case 'n' -> '\n';
+                    case 'r' -> '\r';
+                    default -> escaped;
+                });
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,9 @@
+package com.underground.extractor.cluster;
+
+/**
+ * @param password the password found, {@code null} if none of the candidates fits
+ * @param attempts passwords tried by all workers together
+ * @param failure  why the archive could not be searched, if it could not
+ */
+public record SearchResult(String password, long attempts, String failure) {
+}
@@ -0,0 +1,18 @@
+package com.underground.extractor.handler;
+
+/**
+ * Outcome of trying a single password, returned instead of thrown so that millions of attempts
+ * don't pay for exceptions.
+ */
+public enum AttemptResult {
+    OK,
+    WRONG_PASSWORD,
+    /**
+     * The archive is damaged, another password won't help
+     */
+    CORRUPT,
+    /**
+     * The archive uses a method 7-Zip can't decode, another password won't help
+     */
+    UNSUPPORTED
+}
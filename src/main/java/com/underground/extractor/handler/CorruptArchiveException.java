@@ -0,0 +1,13 @@
+package com.underground.extractor.handler;
+
+/**
+ * The archive can't be opened, no matter the password. Trying further passwords won't help.
+ */
+public class CorruptArchiveException extends Exception {
+
+    private static final long serialVersionUID = 4821675027313596204L;
+
+    public CorruptArchiveException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,98 @@
+package com.underground.extractor.handler;
+
+import java.nio.file.FileSystems;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Selects the entries of an archive to extract by their path and size, so only those are decoded. Patterns are
+ * globs like {@code docs/**.pdf}, or regular expressions if prefixed with {@code regex:}. A pattern without a
+ * {@code /} is matched against the file name as well, so {@code *.txt} selects text files in all folders.
+ */
+public final class EntryFilter {
+
+    public static final EntryFilter ALL = new EntryFilter(List.of(), List.of(), 0, -1, List.of());
+
+    private final List<PathMatcher> includes;
+    private final List<PathMatcher> excludes;
+    private final List<Boolean> includeNameOnly;
+    private final List<Boolean> excludeNameOnly;
+    private final long minSize;
+    private final long maxSize;
+    private final List<String> extensions;
+
+    /**
+     * @param includes   an entry has to match one of them, all entries do if empty
+     * @param excludes   an entry must not match any of them
+     * @param maxSize    {@code -1} for no limit
+     * @param extensions an entry has to have one of them, all entries do if empty
+     * @throws IllegalArgumentException if a pattern is invalid
+     */
+    public EntryFilter(List<String> includes, List<String> excludes, long minSize, long maxSize, List<String> extensions) {
+        this.includes = includes.stream().map(EntryFilter::matcher).toList();
+        this.excludes = excludes.stream().map(EntryFilter::matcher).toList();
+        this.includeNameOnly = includes.stream().map(EntryFilter::nameOnly).toList();
+        this.excludeNameOnly = excludes.stream().map(EntryFilter::nameOnly).toList();
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.extensions = extensions.stream()
+                .map(extension -> extension.toLowerCase(Locale.ROOT).replaceFirst("^\\.", ""))
+                .toList();
+    }
+
+    private static PathMatcher matcher(String pattern) {
+        return FileSystems.getDefault().getPathMatcher(pattern.startsWith("regex:") ? pattern : "glob:" + pattern);
+    }
+
+    private static boolean nameOnly(String pattern) {
+        return !pattern.startsWith("regex:") && !pattern.contains("/");
+    }
+
+    /**
+     * Whether every entry is extracted
+     */
+    public boolean isAll() {
+        return includes.isEmpty() && excludes.isEmpty() && minSize <= 0 && maxSize < 0 && extensions.isEmpty();
+    }
+
+    /**
+     * @param size {@code null} if the archive doesn't tell, the size limits don't apply then
+     */
+    public boolean accepts(String entryPath, Long size) {
+        if (size != null && (size < minSize || maxSize >= 0 && size > maxSize)) {
+            return false;
+        }
+        String normalized = entryPath.replace('\\', '/');
+        String name = normalized.substring(normalized.lastIndexOf('/') + 1);
+        if (!extensions.isEmpty()) {
+            int dot = name.lastIndexOf('.');
+            if (dot < 0 || !extensions.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT))) {
+                return false;
+            }
+        }
+        Path path;
+        Path namePath;
+        try {
+            path = Path.of(normalized);
+            namePath = Path.of(name);
+        } catch (InvalidPathException e) {
+            return includes.isEmpty();
+        }
+        if (!includes.isEmpty() && !matchesAny(includes, includeNameOnly, path, namePath)) {
+            return false;
+        }
+        return !matchesAny(excludes, excludeNameOnly, path, namePath);
+    }
+
+    private static boolean matchesAny(List<PathMatcher> matchers, List<Boolean> nameOnly, Path path, Path name) {
+        for (int i = 0; i < matchers.size(); i++) {
+            if (matchers.get(i).matches(path) || nameOnly.get(i) && matchers.get(i).matches(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,16 @@
+package com.underground.extractor.handler;
+
+import java.time.Duration;
+
+/**
+ * Settings of a single extraction, handed over with every call, so runs with different settings can share the
+ * extractor at the same time.
+ *
+ * @param volumeWait  how long missing or still growing volumes of a multipart archive may take to arrive,
+ *                    {@link Duration#ZERO} fails right away
+ * @param entryFilter the entries to extract, {@link EntryFilter#ALL} extracts everything
+ */
+public record ExtractionSettings(Duration volumeWait, EntryFilter entryFilter) {
+
+    public static final ExtractionSettings DEFAULT = new ExtractionSettings(Duration.ZERO, EntryFilter.ALL);
+}
@@ -3,7 +3,48 @@ package com.underground.extractor.handler;
 import java.io.File;
 
 public interface IArchiveExtractor {
-    boolean extractArchive(File file, String password, String outputDir) throws Exception;
+    default boolean extractArchive(File file, String password, String outputDir) throws Exception {
+        return extractArchive(file, password, outputDir, ExtractionSettings.DEFAULT);
+    }
 
-    boolean extractMultipartArchive(File file, String password, String outputDir) throws Exception;
+    boolean extractArchive(File file, String password, String outputDir, ExtractionSettings settings) throws Exception;
+
+    default boolean extractMultipartArchive(File file, String password, String outputDir) throws Exception {
+        return extractMultipartArchive(file, password, outputDir, ExtractionSettings.DEFAULT);
+    }
+
+    boolean extractMultipartArchive(File file, String password, String outputDir, ExtractionSettings settings) throws Exception;
+
+    /**
+     * Only verifies the password, nothing is written to disk.
+     *
+     * @throws WrongPassException if the password does not fit
+     */
+    boolean testArchive(File file, String password) throws Exception;
+
+    boolean testMultipartArchive(File file, String password) throws Exception;
+
+    /**
+     * Tries the password without throwing on a wrong one, meant for trying a lot of candidates.
+     * The archive stays open between calls until {@link #release(File)}.
+     */
+    AttemptResult attemptPassword(File file, String password, boolean multipart);
+
+    /**
+     * Opens the archive for trying many passwords, the caller has to close the session.
+     */
+    default IAttemptSession openSession(File file, boolean multipart) throws Exception {
+        return openSession(file, multipart, ExtractionSettings.DEFAULT);
+    }
+
+    /**
+     * Like {@link #openSession(File, boolean)}, waiting for the volumes as the settings say.
+     */
+    IAttemptSession openSession(File file, boolean multipart, ExtractionSettings settings) throws Exception;
+
+    /**
+     * Drops whatever was cached for the archive while trying passwords.
+     */
+    default void release(File file) {
+    }
 }
@@ -0,0 +1,22 @@
+package com.underground.extractor.handler;
+
+/**
+ * An archive opened once to try many passwords on it.
+ */
+public interface IAttemptSession extends AutoCloseable {
+
+    /**
+     * Only verifies the password, nothing is written to disk.
+     *
+     * @throws WrongPassException if the password does not fit
+     */
+    boolean tryPassword(String password) throws Exception;
+
+    /**
+     * Like {@link #tryPassword(String)}, but reports a wrong password as result instead of throwing.
+     */
+    AttemptResult attempt(String password);
+
+    @Override
+    void close();
+}
@@ -9,4 +9,17 @@ public class WrongPassException extends Exception{
     public WrongPassException(String message, Throwable cause){
         super(message, cause);
     }
+
+    private static final WrongPassException SIGNAL = new WrongPassException(defaultMessage);
+
+    private WrongPassException(String message) {
+        super(message, null, false, false);
+    }
+
+    /**
+     * Shared instance without stack trace, cheap enough to be thrown for every wrong candidate
+     */
+    public static WrongPassException signal() {
+        return SIGNAL;
+    }
 }
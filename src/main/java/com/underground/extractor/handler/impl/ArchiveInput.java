@@ -0,0 +1,143 @@
+package com.underground.extractor.handler.impl;
+
+import com.underground.extractor.volume.VolumeSets;
+import net.sf.sevenzipjbinding.*;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * Opened input of an archive, either a single file or all volumes of a multipart archive.
+ */
+class ArchiveInput implements Closeable {
+
+    private final InputFile file;
+    private final MultipartArchiveOpenCallback volumes;
+    private final IInStream stream;
+    /**
+     * Only set if 7-Zip opens the volumes itself, split archives are joined by {@link SplitVolumesInStream}
+     */
+    private final MultipartArchiveOpenCallback openCallback;
+
+    /**
+     * Whether 7-Zip asked for the password while opening, only then a wrong one can make opening fail
+     */
+    private boolean passwordAsked;
+
+    private ArchiveInput(InputFile file, MultipartArchiveOpenCallback volumes, IInStream stream,
+                         MultipartArchiveOpenCallback openCallback) {
+        this.file = file;
+        this.volumes = volumes;
+        this.stream = stream;
+        this.openCallback = openCallback;
+    }
+
+    static ArchiveInput open(String archive, boolean multipart, InputOptions options) throws ExtractionException {
+        try {
+            if (!multipart) {
+                var file = new InputFile(archive, options.mapped());
+                return new ArchiveInput(file, null, file.newStream(), null);
+            }
+            var callback = new MultipartArchiveOpenCallback(options);
+            try {
+                if (VolumeSets.splitArchive(archive) == null) {
+                    // 7-Zip asks the callback for the other volumes of .partN.rar, .rNN and .zNN sets itself
+                    IInStream inStream = callback.getStream(archive);
+                    if (inStream == null) {
+                        throw new FileNotFoundException(archive);
+                    }
+                    return new ArchiveInput(null, callback, inStream, callback);
+                }
+                return new ArchiveInput(null, callback, new SplitVolumesInStream(archive, callback), null);
+            } catch (IOException e) {
+                callback.close();
+                throw e;
+            }
+        } catch (FileNotFoundException e) {
+            throw new ExtractionException("File not found", e);
+        } catch (IOException e) {
+            throw new ExtractionException("Could not open '" + archive + "': " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Tells the format from the signature at the start of the archive.
+     *
+     * @return {@code null} if it can't be told
+     */
+    ArchiveFormat sniffFormat() {
+        try {
+            return ArchiveSignatures.sniff(stream);
+        } catch (SevenZipException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Opens the archive in 7-Zip, the password is needed only for encrypted headers.
+     *
+     * @param format {@code null} lets 7-Zip try all registered codecs
+     */
+    IInArchive openInArchive(ArchiveFormat format, String password) throws SevenZipException {
+        passwordAsked = false;
+        var callback = openCallback != null ? new VolumesOpenCallback(password) : new OpenCallback(password);
+        return SevenZip.openInArchive(format, stream, callback);
+    }
+
+    boolean passwordAsked() {
+        return passwordAsked;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (file != null) {
+            file.close();
+        }
+        if (volumes != null) {
+            volumes.close();
+        }
+    }
+
+    private class OpenCallback implements IArchiveOpenCallback, ICryptoGetTextPassword {
+        private final String password;
+
+        OpenCallback(String password) {
+            this.password = password;
+        }
+
+        @Override
+        public String cryptoGetTextPassword() throws SevenZipException {
+            passwordAsked = true;
+            if (password == null) {
+                throw new SevenZipException("Encrypted headers, password needed");
+            }
+            return password;
+        }
+
+        @Override
+        public void setTotal(Long files, Long bytes) {
+        }
+
+        @Override
+        public void setCompleted(Long files, Long bytes) {
+        }
+    }
+
+    private class VolumesOpenCallback extends OpenCallback implements IArchiveOpenVolumeCallback {
+
+        VolumesOpenCallback(String password) {
+            super(password);
+        }
+
+        @Override
+        public Object getProperty(PropID propID) throws SevenZipException {
+            return openCallback.getProperty(propID);
+        }
+
+        @Override
+        public IInStream getStream(String filename) throws SevenZipException {
+            return openCallback.getStream(filename);
+        }
+    }
+}
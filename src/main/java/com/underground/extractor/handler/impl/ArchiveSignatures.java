@@ -0,0 +1,73 @@
+package com.underground.extractor.handler.impl;
+
+import net.sf.sevenzipjbinding.ArchiveFormat;
+import net.sf.sevenzipjbinding.IInStream;
+import net.sf.sevenzipjbinding.SevenZipException;
+
+import java.util.Arrays;
+
+/**
+ * Tells the format of an archive from its first bytes, so 7-Zip opens it with the one codec that fits
+ * instead of trying all registered ones. The volumes of a split archive are joined, so a split 7z archive
+ * starts with the 7z signature as well.
+ */
+final class ArchiveSignatures {
+
+    private static final byte[] ZIP_LOCAL_FILE = {'P', 'K', 3, 4};
+    private static final byte[] ZIP_EMPTY = {'P', 'K', 5, 6};
+    /**
+     * First volume of a split zip
+     */
+    private static final byte[] ZIP_SPANNED = {'P', 'K', 7, 8};
+    private static final byte[] RAR4 = {'R', 'a', 'r', '!', 0x1A, 7, 0};
+    private static final byte[] RAR5 = {'R', 'a', 'r', '!', 0x1A, 7, 1, 0};
+    private static final byte[] SEVEN_ZIP = {'7', 'z', (byte) 0xBC, (byte) 0xAF, 0x27, 0x1C};
+
+    private static final int LONGEST = 8;
+
+    private ArchiveSignatures() {
+    }
+
+    /**
+     * Reads the first bytes of the stream and seeks back to its start.
+     *
+     * @return {@code null} if the signature is unknown, 7-Zip has to find out itself then
+     */
+    static ArchiveFormat sniff(IInStream stream) throws SevenZipException {
+        byte[] head = new byte[LONGEST];
+        int length = 0;
+        stream.seek(0, IInStream.SEEK_SET);
+        while (length < LONGEST) {
+            // the stream only reads to the start of an array
+            byte[] chunk = new byte[LONGEST - length];
+            int read = stream.read(chunk);
+            if (read <= 0) {
+                break;
+            }
+            System.arraycopy(chunk, 0, head, length, read);
+            length += read;
+        }
+        stream.seek(0, IInStream.SEEK_SET);
+        return sniff(Arrays.copyOf(head, length));
+    }
+
+    static ArchiveFormat sniff(byte[] head) {
+        if (startsWith(head, ZIP_LOCAL_FILE) || startsWith(head, ZIP_EMPTY) || startsWith(head, ZIP_SPANNED)) {
+            return ArchiveFormat.ZIP;
+        }
+        if (startsWith(head, RAR5)) {
+            return ArchiveFormat.RAR5;
+        }
+        if (startsWith(head, RAR4)) {
+            return ArchiveFormat.RAR;
+        }
+        if (startsWith(head, SEVEN_ZIP)) {
+            return ArchiveFormat.SEVEN_ZIP;
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] head, byte[] signature) {
+        return head.length >= signature.length && Arrays.equals(head, 0, signature.length, signature, 0, signature.length);
+    }
+}
@@ -0,0 +1,145 @@
+package com.underground.extractor.handler.impl;
+
+import com.underground.extractor.handler.AttemptResult;
+import com.underground.extractor.handler.CorruptArchiveException;
+import com.underground.extractor.handler.IAttemptSession;
+import com.underground.extractor.handler.WrongPassException;
+import net.sf.sevenzipjbinding.ICryptoGetTextPassword;
+import net.sf.sevenzipjbinding.IInArchive;
+import net.sf.sevenzipjbinding.SevenZipException;
+
+import java.io.IOException;
+
+/**
+ * Opens the archive and reads its catalog once, then tries every candidate on the same {@link IInArchive}
+ * by swapping the password handed out to 7-Zip. Archives with encrypted headers can't be opened without
+ * the password, so for those every attempt opens the archive again.
+ * <p>
+ * Not thread safe, every worker needs a session of its own.
+ */
+class AttemptSession implements IAttemptSession {
+
+    private final ZipHandler7ZipImpl zipHandler7Zip;
+    private final ExtractionContext context;
+    private final boolean multipart;
+    private final SwappablePassword password = new SwappablePassword();
+    private ArchiveInput input;
+    private IInArchive inArchive;
+    private ExtractCallback probeCallback;
+    private int probeIndex;
+
+    private AttemptSession(ZipHandler7ZipImpl zipHandler7Zip, ExtractionContext context, boolean multipart) {
+        this.zipHandler7Zip = zipHandler7Zip;
+        this.context = context;
+        this.multipart = multipart;
+    }
+
+    static AttemptSession open(ZipHandler7ZipImpl zipHandler7Zip, ExtractionContext context, boolean multipart) throws ExtractionException, CorruptArchiveException {
+        var session = new AttemptSession(zipHandler7Zip, context, multipart);
+        session.input = ArchiveInput.open(context.archive, multipart, zipHandler7Zip.inputOptions(context, false));
+        try {
+            session.inArchive = zipHandler7Zip.openInArchive(context, session.input, null);
+            session.probeIndex = zipHandler7Zip.findSmallestEncryptedEntry(session.inArchive);
+            session.probeCallback = new ExtractCallback(zipHandler7Zip, context, session.inArchive, session.password).recordOnly();
+        } catch (WrongPassException | SevenZipException e) {
+            // encrypted headers, fall back to opening it for every attempt
+            session.close();
+        } catch (CorruptArchiveException e) {
+            session.close();
+            throw e;
+        }
+        return session;
+    }
+
+    boolean isReopeningForEveryAttempt() {
+        return inArchive == null;
+    }
+
+    @Override
+    public boolean tryPassword(String candidate) throws WrongPassException, ExtractionException, CorruptArchiveException {
+        zipHandler7Zip.verify(context, candidate);
+        if (inArchive == null) {
+            return zipHandler7Zip.process(context, candidate, multipart);
+        }
+        if (probeIndex < 0) {
+            // nothing encrypted
+            return true;
+        }
+        AttemptResult result = AttemptResult.CORRUPT;
+        try {
+            result = probe(candidate);
+        } catch (SevenZipException e) {
+            zipHandler7Zip.rethrow(context, e);
+        }
+        return switch (result) {
+            case OK -> true;
+            case WRONG_PASSWORD -> throw WrongPassException.signal();
+            default -> throw new ExtractionException("Error testing archive '" + context.archive + "': " + result);
+        };
+    }
+
+    @Override
+    public AttemptResult attempt(String candidate) {
+        if (!zipHandler7Zip.mayMatch(context, candidate)) {
+            return AttemptResult.WRONG_PASSWORD;
+        }
+        if (inArchive == null) {
+            try {
+                zipHandler7Zip.process(context, candidate, multipart);
+                return AttemptResult.OK;
+            } catch (WrongPassException e) {
+                return AttemptResult.WRONG_PASSWORD;
+            } catch (ExtractionException | CorruptArchiveException e) {
+                return AttemptResult.CORRUPT;
+            }
+        }
+        if (probeIndex < 0) {
+            return AttemptResult.OK;
+        }
+        try {
+            return probe(candidate);
+        } catch (SevenZipException e) {
+            return AttemptResult.CORRUPT;
+        }
+    }
+
+    private AttemptResult probe(String candidate) throws SevenZipException {
+        password.set(candidate);
+        probeCallback.reset();
+        inArchive.extract(new int[]{probeIndex}, true, probeCallback);
+        return probeCallback.attemptResult();
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (inArchive != null) {
+                inArchive.close();
+            }
+            if (input != null) {
+                input.close();
+            }
+        } catch (IOException e) {
+            zipHandler7Zip.logger.warn("Could not close archive '{}'", context.archive);
+        } finally {
+            inArchive = null;
+            input = null;
+        }
+    }
+
+    /**
+     * Password handed out to 7-Zip, changed between attempts
+     */
+    private static class SwappablePassword implements ICryptoGetTextPassword {
+        private String password;
+
+        void set(String password) {
+            this.password = password;
+        }
+
+        @Override
+        public String cryptoGetTextPassword() {
+            return password;
+        }
+    }
+}
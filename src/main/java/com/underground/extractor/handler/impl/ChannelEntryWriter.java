@@ -0,0 +1,185 @@
+package com.underground.extractor.handler.impl;
+
+import net.sf.sevenzipjbinding.ISequentialOutStream;
+import net.sf.sevenzipjbinding.SevenZipException;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Future;
+
+/**
+ * Writes one extracted entry through a {@link FileChannel}. 7-Zip hands out many small chunks, they are
+ * gathered in a pooled direct buffer and written in large blocks.
+ * <p>
+ * With a {@link WriteBehind} the blocks are handed to its writer thread instead of being written by the
+ * decoding thread, and closing only queues the last block, see {@link #completion()}.
+ */
+class ChannelEntryWriter implements ISequentialOutStream, Closeable {
+
+    private final File file;
+    private final DirectBufferPool pool;
+    private final WriteBehind writeBehind;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private ByteBuffer buffer;
+    private long written;
+    private volatile IOException failure;
+    private Future<Void> completion;
+
+    private ChannelEntryWriter(File file, DirectBufferPool pool, WriteBehind writeBehind) throws IOException {
+        this.file = file;
+        this.pool = pool;
+        this.writeBehind = writeBehind;
+        this.randomAccessFile = new RandomAccessFile(file, "rw");
+        this.channel = randomAccessFile.getChannel();
+        try {
+            this.buffer = writeBehind != null ? acquire() : pool.acquire();
+            // a file left by an earlier run may be longer
+            randomAccessFile.setLength(0);
+        } catch (IOException e) {
+            if (buffer != null) {
+                release(buffer);
+            }
+            randomAccessFile.close();
+            throw e;
+        }
+    }
+
+    static ChannelEntryWriter open(File file, DirectBufferPool pool) throws IOException {
+        return new ChannelEntryWriter(file, pool, null);
+    }
+
+    /**
+     * Like {@link #open(File, DirectBufferPool)}, but the blocks are written by the write-behind thread.
+     */
+    static ChannelEntryWriter open(File file, WriteBehind writeBehind) throws IOException {
+        return new ChannelEntryWriter(file, null, writeBehind);
+    }
+
+    private void release(ByteBuffer released) {
+        if (writeBehind != null) {
+            writeBehind.release(released);
+        } else {
+            pool.release(released);
+        }
+    }
+
+    private ByteBuffer acquire() throws IOException {
+        try {
+            return writeBehind.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a write buffer");
+        }
+    }
+
+    @Override
+    public int write(byte[] data) throws SevenZipException {
+        try {
+            if (failure != null) {
+                throw failure;
+            }
+            if (writeBehind == null && data.length >= buffer.capacity()) {
+                flush();
+                writeFully(ByteBuffer.wrap(data));
+                return data.length;
+            }
+            int offset = 0;
+            while (offset < data.length) {
+                int length = Math.min(buffer.remaining(), data.length - offset);
+                buffer.put(data, offset, length);
+                offset += length;
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+            }
+        } catch (IOException e) {
+            throw new SevenZipException("Error writing to file: " + file.getAbsolutePath(), e);
+        }
+        return data.length;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        if (writeBehind == null) {
+            writeFully(buffer);
+            buffer.clear();
+            return;
+        }
+        ByteBuffer full = buffer;
+        writeBehind.submit(() -> {
+            try {
+                if (failure == null) {
+                    writeFully(full);
+                }
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                writeBehind.release(full);
+            }
+            return null;
+        });
+        buffer = acquire();
+    }
+
+    private void writeFully(ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            written += channel.write(data);
+        }
+    }
+
+    private void finish() throws IOException {
+        try {
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        if (writeBehind != null) {
+            ByteBuffer last = buffer;
+            buffer = null;
+            last.flip();
+            completion = writeBehind.submit(() -> {
+                try {
+                    if (failure == null) {
+                        writeFully(last);
+                    }
+                } finally {
+                    writeBehind.release(last);
+                    finish();
+                }
+                return null;
+            });
+            return;
+        }
+        try {
+            buffer.flip();
+            writeFully(buffer);
+            finish();
+        } finally {
+            pool.release(buffer);
+            buffer = null;
+        }
+    }
+
+    /**
+     * Completes once the entry is on disk and the file closed, fails with the first write error.
+     * Only set with write-behind, after {@link #close()}.
+     */
+    Future<Void> completion() {
+        return completion;
+    }
+}
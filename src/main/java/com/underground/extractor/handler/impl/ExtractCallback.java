@@ -1,30 +1,165 @@
 package com.underground.extractor.handler.impl;
 
+import com.underground.extractor.handler.AttemptResult;
 import net.sf.sevenzipjbinding.*;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 class ExtractCallback implements ICryptoGetTextPassword, IArchiveExtractCallback {
     private final ZipHandler7ZipImpl zipHandler7Zip;
+    private final ExtractionContext context;
     private final IInArchive inArchive;
     private int index;
-    private OutputStream outputStream;
+    private ChannelEntryWriter outputStream;
     private File file;
     private ExtractAskMode extractAskMode;
     private boolean isFolder;
 
-    private final String password;
+    private final ICryptoGetTextPassword password;
+    /**
+     * If set, a failed entry is only recorded instead of aborting the extraction
+     */
+    private boolean recordOnly;
+    private WriteBehind writeBehind;
+    private final List<Future<Void>> pendingWrites = new ArrayList<>();
+    private ExtractOperationResult operationResult;
+    private ExtractionJournal journal;
+    /**
+     * Entries extracted, but still being written by the write-behind thread
+     */
+    private final List<Unjournaled> unjournaled = new ArrayList<>();
+    private Future<Void> lastCompletion;
 
-    public String cryptoGetTextPassword() {
-        return password;
+    private record Unjournaled(Future<Void> completion, int index, String path, long size) {
     }
 
-    ExtractCallback(ZipHandler7ZipImpl zipHandler7Zip, IInArchive inArchive, String password) {
+    public String cryptoGetTextPassword() throws SevenZipException {
+        return password.cryptoGetTextPassword();
+    }
+
+    ExtractCallback(ZipHandler7ZipImpl zipHandler7Zip, ExtractionContext context, IInArchive inArchive, String password) {
+        this(zipHandler7Zip, context, inArchive, () -> password);
+    }
+
+    ExtractCallback(ZipHandler7ZipImpl zipHandler7Zip, ExtractionContext context, IInArchive inArchive, ICryptoGetTextPassword password) {
         this.zipHandler7Zip = zipHandler7Zip;
+        this.context = context;
         this.inArchive = inArchive;
         this.password = password;
     }
 
+    /**
+     * Records the outcome of the extracted entries instead of throwing, so a wrong password costs no exception.
+     */
+    ExtractCallback recordOnly() {
+        this.recordOnly = true;
+        return this;
+    }
+
+    /**
+     * Hands the writes of extracted files to the write-behind thread, see {@link #awaitWrites()}.
+     */
+    ExtractCallback writeBehind(WriteBehind writeBehind) {
+        this.writeBehind = writeBehind;
+        return this;
+    }
+
+    /**
+     * Records every entry in the journal once its file is written completely.
+     */
+    ExtractCallback journal(ExtractionJournal journal) {
+        this.journal = journal;
+        return this;
+    }
+
+    /**
+     * Closes the last file and waits until everything extracted is on disk.
+     */
+    void awaitWrites() throws SevenZipException {
+        closeOutputStream();
+        try {
+            awaitAll();
+        } finally {
+            journalWritten();
+        }
+    }
+
+    private void awaitAll() throws SevenZipException {
+        SevenZipException failure = null;
+        for (Future<Void> pendingWrite : pendingWrites) {
+            try {
+                pendingWrite.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = new SevenZipException("Error writing extracted files", e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SevenZipException("Interrupted while writing extracted files", e);
+            }
+        }
+        pendingWrites.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Clears the outcome recorded by the previous extraction.
+     */
+    void reset() {
+        this.operationResult = null;
+    }
+
+    /**
+     * The first failure, or {@code OK} if every extracted entry was fine
+     */
+    AttemptResult attemptResult() {
+        return operationResult == null ? AttemptResult.OK : toAttemptResult(operationResult);
+    }
+
+    private AttemptResult toAttemptResult(ExtractOperationResult extractOperationResult) {
+        return switch (extractOperationResult) {
+            case OK -> AttemptResult.OK;
+            case WRONG_PASSWORD -> AttemptResult.WRONG_PASSWORD;
+            // 7z can't tell a wrong key from damaged data
+            case DATAERROR -> inArchive.getArchiveFormat() == ArchiveFormat.SEVEN_ZIP
+                    ? AttemptResult.WRONG_PASSWORD : AttemptResult.CORRUPT;
+            case UNSUPPORTEDMETHOD -> AttemptResult.UNSUPPORTED;
+            default -> AttemptResult.CORRUPT;
+        };
+    }
+
+    /**
+     * Journals the entries whose files are written by now, in the order they were extracted.
+     */
+    private void journalWritten() {
+        while (!unjournaled.isEmpty()) {
+            Unjournaled entry = unjournaled.get(0);
+            if (entry.completion() != null) {
+                if (!entry.completion().isDone()) {
+                    return;
+                }
+                try {
+                    entry.completion().get();
+                } catch (ExecutionException e) {
+                    // not written, the entry is extracted again when resuming
+                    unjournaled.remove(0);
+                    continue;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            journal.completed(entry.index(), entry.path(), entry.size());
+            unjournaled.remove(0);
+        }
+    }
+
     @Override
     public void setTotal(long total) {
 
@@ -38,6 +173,7 @@ class ExtractCallback implements ICryptoGetTextPassword, IArchiveExtractCallback
     @Override
     public ISequentialOutStream getStream(int index, ExtractAskMode extractAskMode) throws SevenZipException {
         closeOutputStream();
+        lastCompletion = null;
 
         this.index = index;
         this.extractAskMode = extractAskMode;
@@ -50,7 +186,7 @@ class ExtractCallback implements ICryptoGetTextPassword, IArchiveExtractCallback
         }
 
         String path = (String) inArchive.getProperty(index, PropID.PATH);
-        file = new File(zipHandler7Zip.outputDirectoryFile, path);
+        file = new File(context.outputDirectoryFile, path);
         if (isFolder) {
             createDirectory(file);
             return null;
@@ -59,26 +195,21 @@ class ExtractCallback implements ICryptoGetTextPassword, IArchiveExtractCallback
         createDirectory(file.getParentFile());
 
         try {
-            outputStream = new FileOutputStream(file);
-        } catch (FileNotFoundException e) {
+            outputStream = writeBehind != null
+                    ? ChannelEntryWriter.open(file, writeBehind)
+                    : ChannelEntryWriter.open(file, zipHandler7Zip.bufferPool);
+        } catch (IOException e) {
             throw new SevenZipException("Error opening file: "
                     + file.getAbsolutePath(), e);
         }
 
-        return data -> {
-            try {
-                outputStream.write(data);
-            } catch (IOException e) {
-                throw new SevenZipException("Error writing to file: "
-                        + file.getAbsolutePath());
-            }
-            return data.length; // Return amount of consumed data
-        };
+        return outputStream;
     }
 
     private void createDirectory(File parentFile) throws SevenZipException {
         if (!parentFile.exists()) {
-            if (!parentFile.mkdirs()) {
+            //another extraction thread may have created it in the meantime
+            if (!parentFile.mkdirs() && !parentFile.isDirectory()) {
                 throw new SevenZipException("Error creating directory: "
                         + parentFile.getAbsolutePath());
             }
@@ -88,8 +219,13 @@ class ExtractCallback implements ICryptoGetTextPassword, IArchiveExtractCallback
     private void closeOutputStream() throws SevenZipException {
         if (outputStream != null) {
             try {
-                outputStream.close();
+                ChannelEntryWriter closing = outputStream;
                 outputStream = null;
+                closing.close();
+                lastCompletion = closing.completion();
+                if (closing.completion() != null) {
+                    pendingWrites.add(closing.completion());
+                }
             } catch (IOException e) {
                 throw new SevenZipException("Error closing file: "
                         + file.getAbsolutePath());
@@ -106,16 +242,27 @@ class ExtractCallback implements ICryptoGetTextPassword, IArchiveExtractCallback
     public void setOperationResult(ExtractOperationResult extractOperationResult)
             throws SevenZipException {
         closeOutputStream();
+        if (recordOnly) {
+            if (operationResult == null && extractOperationResult != ExtractOperationResult.OK) {
+                operationResult = extractOperationResult;
+            }
+            return;
+        }
         String path = (String) inArchive.getProperty(index, PropID.PATH);
-        boolean is7zDataErr = extractOperationResult == ExtractOperationResult.DATAERROR
-                && inArchive.getArchiveFormat().equals(ArchiveFormat.SEVEN_ZIP);
-        if (extractOperationResult == ExtractOperationResult.WRONG_PASSWORD || is7zDataErr) {
-            throw new SevenZipException(ZipHandler7ZipImpl.EXCEPTION_MSG_WRONG_PASS);
+        AttemptResult result = toAttemptResult(extractOperationResult);
+        if (result == AttemptResult.WRONG_PASSWORD) {
+            throw new ZipHandler7ZipImpl.WrongPassSignal();
         }
-        if (extractOperationResult != ExtractOperationResult.OK) {
+        if (result != AttemptResult.OK) {
             throw new SevenZipException("Invalid file: " + path);
         }
 
+        if (journal != null && !isFolder && extractAskMode == ExtractAskMode.EXTRACT) {
+            Long size = (Long) inArchive.getProperty(index, PropID.SIZE);
+            unjournaled.add(new Unjournaled(lastCompletion, index, path, size != null ? size : file.length()));
+            journalWritten();
+        }
+
         if (!isFolder) {
             switch (extractAskMode) {
                 case EXTRACT:
@@ -0,0 +1,32 @@
+package com.underground.extractor.handler.impl;
+
+import com.underground.extractor.handler.ExtractionSettings;
+
+import java.io.File;
+
+/**
+ * State of a single extraction call. Every archive gets its own context, so the
+ * handler itself stays stateless and can be used by several threads at once.
+ */
+class ExtractionContext {
+    final String archive;
+    /**
+     * Where to extract to, {@code null} if the password should only be tested
+     */
+    final File outputDirectoryFile;
+    final ExtractionSettings settings;
+
+    ExtractionContext(File archiveFile, String outputDirectory, ExtractionSettings settings) {
+        this.archive = archiveFile.getAbsolutePath();
+        this.outputDirectoryFile = outputDirectory != null ? new File(outputDirectory) : null;
+        this.settings = settings;
+    }
+
+    ExtractionContext(File archiveFile, String outputDirectory) {
+        this(archiveFile, outputDirectory, ExtractionSettings.DEFAULT);
+    }
+
+    boolean isTestOnly() {
+        return outputDirectoryFile == null;
+    }
+}
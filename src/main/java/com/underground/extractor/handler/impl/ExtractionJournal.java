@@ -0,0 +1,187 @@
+package com.underground.extractor.handler.impl;
+
+import net.sf.sevenzipjbinding.IInArchive;
+import net.sf.sevenzipjbinding.PropID;
+import net.sf.sevenzipjbinding.SevenZipException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * Records the entries of an archive written completely, so an extraction interrupted by a crash can go on with the
+ * entries still missing. The journal lives in {@value #DIRECTORY} within the output directory and is removed once
+ * the archive is extracted completely. Its first line tells the archive, a journal of another archive or of an
+ * archive which changed since is ignored.
+ * <p>
+ * On resuming, an entry of the journal is skipped if its file still has its size. An entry missing in the journal,
+ * because it was written after the last line made it to disk, is skipped if size and CRC of its file match.
+ */
+class ExtractionJournal implements Closeable {
+
+    static final String DIRECTORY = ".extractor-journal";
+    private static final int CRC_BUFFER = 1024 * 1024;
+
+    Logger logger = LoggerFactory.getLogger(ExtractionJournal.class);
+
+    private final Path file;
+    private final File outputDirectory;
+    /**
+     * Entries completed by an earlier run, by index
+     */
+    private final Map<Integer, Entry> completed = new HashMap<>();
+    private final boolean resumed;
+    private Writer writer;
+
+    private record Entry(String path, long size) {
+    }
+
+    private ExtractionJournal(Path file, File outputDirectory, String header) throws IOException {
+        this.file = file;
+        this.outputDirectory = outputDirectory;
+        boolean resumed = false;
+        if (Files.exists(file)) {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            resumed = !lines.isEmpty() && lines.get(0).equals(header);
+            for (String line : resumed ? lines.subList(1, lines.size()) : List.<String>of()) {
+                String[] fields = line.split("\t", 3);
+                // the last line may be cut off by the crash
+                if (fields.length == 3) {
+                    try {
+                        completed.put(Integer.parseInt(fields[0]), new Entry(fields[2], Long.parseLong(fields[1])));
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+            }
+        }
+        this.resumed = resumed;
+        if (!resumed) {
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, header + "\n", StandardCharsets.UTF_8);
+        }
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    }
+
+    static ExtractionJournal open(ExtractionContext context) throws IOException {
+        File archive = new File(context.archive);
+        CRC32 crc = new CRC32();
+        crc.update(context.archive.getBytes(StandardCharsets.UTF_8));
+        Path file = context.outputDirectoryFile.toPath().resolve(DIRECTORY)
+                .resolve(archive.getName() + "-" + Long.toHexString(crc.getValue()) + ".journal");
+        return new ExtractionJournal(file, context.outputDirectoryFile,
+                context.archive + "\t" + archive.length() + "\t" + archive.lastModified());
+    }
+
+    /**
+     * @return the indexes of the entries still to extract, {@code null} for all of them if nothing was extracted before
+     */
+    int[] missing(IInArchive inArchive) throws SevenZipException {
+        if (!resumed) {
+            return null;
+        }
+        int items = inArchive.getNumberOfItems();
+        int[] missing = IntStream.range(0, items).filter(index -> !isDone(inArchive, index)).toArray();
+        logger.info("Resuming extraction, {} of {} entries done already", items - missing.length, items);
+        return missing;
+    }
+
+    private boolean isDone(IInArchive inArchive, int index) {
+        try {
+            if (Boolean.TRUE.equals(inArchive.getProperty(index, PropID.IS_FOLDER))) {
+                return false;
+            }
+            String path = (String) inArchive.getProperty(index, PropID.PATH);
+            Long size = (Long) inArchive.getProperty(index, PropID.SIZE);
+            File extracted = new File(outputDirectory, path);
+            if (size == null || !extracted.isFile() || extracted.length() != size) {
+                return false;
+            }
+            Entry entry = completed.get(index);
+            if (entry != null && entry.path().equals(path) && entry.size() == size) {
+                return true;
+            }
+            Integer crc = (Integer) inArchive.getProperty(index, PropID.CRC);
+            if (crc != null && crc(extracted) == (crc & 0xFFFFFFFFL)) {
+                completed(index, path, size);
+                return true;
+            }
+        } catch (IOException e) {
+            logger.warn("Could not check entry {}: {}", index, e.getMessage());
+        }
+        return false;
+    }
+
+    private static long crc(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[CRC_BUFFER];
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Records an entry whose file is written completely, the line is flushed right away.
+     */
+    synchronized void completed(int index, String path, long size) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.write(index + "\t" + size + "\t" + path + "\n");
+            writer.flush();
+        } catch (IOException e) {
+            logger.warn("Could not write the extraction journal {}, stopped journaling: {}", file, e.getMessage());
+            closeWriter();
+        }
+    }
+
+    /**
+     * Removes the journal once the archive is extracted completely.
+     */
+    synchronized void finish() throws IOException {
+        closeWriter();
+        Files.deleteIfExists(file);
+        try (var others = Files.list(file.getParent())) {
+            if (others.findAny().isEmpty()) {
+                Files.delete(file.getParent());
+            }
+        } catch (DirectoryNotEmptyException | NoSuchFileException e) {
+            // another archive extracted to the same directory meanwhile
+        }
+    }
+
+    private void closeWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                logger.warn("Could not close the extraction journal {}", file);
+            }
+            writer = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closeWriter();
+    }
+}
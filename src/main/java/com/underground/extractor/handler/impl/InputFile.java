@@ -0,0 +1,72 @@
+package com.underground.extractor.handler.impl;
+
+import net.sf.sevenzipjbinding.IInStream;
+import net.sf.sevenzipjbinding.impl.RandomAccessFileInStream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An archive file, or one volume of it, opened for reading by 7-Zip. If mapped, the file is read through
+ * {@link MappedByteBuffer} windows, so repeated reads of headers and probed entries are served from the page
+ * cache without a syscall each. A single mapping can't exceed 2 GB, larger files get several windows,
+ * which are only mapped once read.
+ */
+class InputFile implements Closeable {
+
+    static final int WINDOW_SHIFT = 30;
+    static final long WINDOW_SIZE = 1L << WINDOW_SHIFT;
+
+    private final RandomAccessFile file;
+    private final boolean mapped;
+    private final long size;
+    private final MappedByteBuffer[] windows;
+
+    InputFile(String name, boolean mapped) throws IOException {
+        this.file = new RandomAccessFile(name, "r");
+        this.mapped = mapped;
+        try {
+            this.size = file.length();
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+        this.windows = new MappedByteBuffer[mapped ? (int) ((size + WINDOW_SIZE - 1) >>> WINDOW_SHIFT) : 0];
+    }
+
+    /**
+     * Returns a stream positioned at the start of the file.
+     */
+    IInStream newStream() throws IOException {
+        if (mapped) {
+            return new MappedFileInStream(this);
+        }
+        file.seek(0);
+        return new RandomAccessFileInStream(file);
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * Returns the mapping of the given window, mapping it on first use.
+     */
+    synchronized MappedByteBuffer window(int index) throws IOException {
+        MappedByteBuffer window = windows[index];
+        if (window == null) {
+            long start = (long) index << WINDOW_SHIFT;
+            window = file.getChannel().map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, size - start));
+            windows[index] = window;
+        }
+        return window;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
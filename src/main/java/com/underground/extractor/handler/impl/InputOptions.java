@@ -0,0 +1,11 @@
+package com.underground.extractor.handler.impl;
+
+/**
+ * How archives and their volumes are read.
+ *
+ * @param mapped     whether to read through memory mappings
+ * @param prefetcher warms the following volumes ahead of 7-Zip, {@code null} if disabled
+ * @param volumeWait waits for volumes that are still arriving, {@code null} if disabled
+ */
+record InputOptions(boolean mapped, VolumePrefetcher prefetcher, VolumeWait volumeWait) {
+}
@@ -0,0 +1,58 @@
+package com.underground.extractor.handler.impl;
+
+import net.sf.sevenzipjbinding.IInStream;
+import net.sf.sevenzipjbinding.SevenZipException;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Reads a mapped {@link InputFile}. Every stream has its own position, the mappings are shared.
+ * A read never crosses a window boundary, 7-Zip simply asks again for the rest.
+ */
+class MappedFileInStream implements IInStream {
+
+    private final InputFile inputFile;
+    private long position;
+
+    MappedFileInStream(InputFile inputFile) {
+        this.inputFile = inputFile;
+    }
+
+    @Override
+    public long seek(long offset, int seekOrigin) throws SevenZipException {
+        long target = switch (seekOrigin) {
+            case SEEK_SET -> offset;
+            case SEEK_CUR -> position + offset;
+            case SEEK_END -> inputFile.size() + offset;
+            default -> throw new SevenZipException("Seek: unknown origin: " + seekOrigin);
+        };
+        if (target < 0) {
+            throw new SevenZipException("Seek: negative position: " + target);
+        }
+        position = target;
+        return position;
+    }
+
+    @Override
+    public int read(byte[] data) throws SevenZipException {
+        if (position >= inputFile.size() || data.length == 0) {
+            return 0;
+        }
+        int offset = (int) (position & (InputFile.WINDOW_SIZE - 1));
+        try {
+            MappedByteBuffer window = inputFile.window((int) (position >>> InputFile.WINDOW_SHIFT));
+            int length = Math.min(data.length, window.limit() - offset);
+            window.get(offset, data, 0, length);
+            position += length;
+            return length;
+        } catch (IOException e) {
+            throw new SevenZipException("Error mapping input at position " + position, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        // the mapping belongs to the input file
+    }
+}
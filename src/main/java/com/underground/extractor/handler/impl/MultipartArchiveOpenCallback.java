@@ -1,11 +1,11 @@
 package com.underground.extractor.handler.impl;
 
+import com.underground.extractor.volume.VolumeSets;
 import net.sf.sevenzipjbinding.*;
-import net.sf.sevenzipjbinding.impl.RandomAccessFileInStream;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
@@ -13,16 +13,35 @@ import java.util.Objects;
 public class MultipartArchiveOpenCallback implements IArchiveOpenVolumeCallback, IArchiveOpenCallback {
 
     /**
-     * Cache for opened file streams
+     * Cache for opened volumes
      */
-    private final Map<String, RandomAccessFile> openedRandomAccessFileList =
+    private final Map<String, InputFile> openedInputFiles =
             new HashMap<>();
 
+    /**
+     * How volumes are read, see {@link InputOptions}
+     */
+    private final InputOptions options;
+
     /**
      * Name of the last volume returned by {@link #getStream(String)}
      */
     private String name ;
 
+    /**
+     * Sizes of the first volume and of the last one opened, to tell whether a split 7z archive may go on
+     */
+    private long firstVolumeSize = -1;
+    private long lastVolumeSize = -1;
+
+    public MultipartArchiveOpenCallback() {
+        this(new InputOptions(false, null, null));
+    }
+
+    MultipartArchiveOpenCallback(InputOptions options) {
+        this.options = options;
+    }
+
     /**
      * This method should at least provide the name of the last
      * opened volume (propID=PropID.NAME).
@@ -53,29 +72,32 @@ public class MultipartArchiveOpenCallback implements IArchiveOpenVolumeCallback,
     @Override
     public IInStream getStream(String filename) throws SevenZipException {
         try {
-            // We use caching of opened streams, so check cache first
-            RandomAccessFile randomAccessFile = openedRandomAccessFileList
-                    .get(filename);
-            if (randomAccessFile != null) { // Cache hit.
-                // Move the file pointer back to the beginning
-                // in order to emulating new stream
-                randomAccessFile.seek(0);
-
+            // We use caching of opened volumes, so check cache first
+            InputFile inputFile = openedInputFiles.get(filename);
+            if (inputFile != null) { // Cache hit.
                 // Save current volume name in case getProperty() will be called
                 name = filename;
 
-                return new RandomAccessFileInStream(randomAccessFile);
+                // A new stream starts at the beginning of the volume
+                return newStream(filename, inputFile);
             }
 
             // Nothing useful in cache. Open required volume.
-            randomAccessFile = new RandomAccessFile(filename, "r");
+            if (options.volumeWait() != null && mayStillArrive(filename)) {
+                options.volumeWait().await(new File(filename));
+            }
+            inputFile = new InputFile(filename, options.mapped());
 
-            // Put new stream in the cache
-            openedRandomAccessFileList.put(filename, randomAccessFile);
+            // Put new volume in the cache
+            openedInputFiles.put(filename, inputFile);
+            if (firstVolumeSize < 0) {
+                firstVolumeSize = inputFile.size();
+            }
+            lastVolumeSize = inputFile.size();
 
             // Save current volume name in case getProperty() will be called
             name = filename;
-            return new RandomAccessFileInStream(randomAccessFile);
+            return newStream(filename, inputFile);
         } catch (FileNotFoundException fileNotFoundException) {
             // Required volume doesn't exist. This happens if the volume:
             // 1. never exists. 7-Zip doesn't know how many volumes should
@@ -90,11 +112,29 @@ public class MultipartArchiveOpenCallback implements IArchiveOpenVolumeCallback,
         }
     }
 
+    /**
+     * Reads of the stream tell the prefetcher when to warm the following volumes
+     */
+    private IInStream newStream(String filename, InputFile inputFile) throws IOException {
+        IInStream stream = inputFile.newStream();
+        return options.prefetcher() != null ? options.prefetcher().track(filename, inputFile.size(), stream) : stream;
+    }
+
+    /**
+     * 7-Zip only asks for a further RAR or zip volume if the previous one says there is one. A split archive
+     * is probed one volume past its end, but every volume except the last has the size of the first one,
+     * so a smaller volume ends the set.
+     */
+    private boolean mayStillArrive(String filename) {
+        return VolumeSets.splitArchive(filename) == null
+                || firstVolumeSize < 0 || lastVolumeSize == firstVolumeSize;
+    }
+
     /**
      * Close all opened streams
      */
     void close() throws IOException {
-        for (RandomAccessFile file : openedRandomAccessFileList.values()) {
+        for (InputFile file : openedInputFiles.values()) {
             file.close();
         }
     }
@@ -0,0 +1,106 @@
+package com.underground.extractor.handler.impl;
+
+import com.underground.extractor.volume.VolumeSets;
+import net.sf.sevenzipjbinding.IArchiveOpenVolumeCallback;
+import net.sf.sevenzipjbinding.IInStream;
+import net.sf.sevenzipjbinding.SevenZipException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+
+/**
+ * Joins the volumes of an archive split into {@code name.001}, {@code name.002}, ... into one stream.
+ * Unlike {@link net.sf.sevenzipjbinding.impl.VolumedArchiveInStream} it takes any archive type and counter width,
+ * so {@code .zip.001} or {@code .rar.01} sets are read just like {@code .7z.001} ones.
+ * Volumes are asked from the callback only when reached, the end of the set is where the callback has no more.
+ */
+class SplitVolumesInStream implements IInStream {
+
+    private final IArchiveOpenVolumeCallback callback;
+    private final String prefix;
+    private final String counterFormat;
+    private final long firstNumber;
+    private final List<IInStream> volumes = new ArrayList<>();
+    /**
+     * Offset of each opened volume in the joined stream, followed by the end of the last one
+     */
+    private final List<Long> starts = new ArrayList<>();
+    private boolean allOpened;
+    private long position;
+
+    SplitVolumesInStream(String firstVolume, IArchiveOpenVolumeCallback callback) throws SevenZipException {
+        Matcher matcher = VolumeSets.counter(firstVolume);
+        if (matcher == null) {
+            throw new SevenZipException("Not a split archive: " + firstVolume);
+        }
+        this.callback = callback;
+        this.prefix = firstVolume.substring(0, matcher.start(2));
+        this.counterFormat = "%0" + matcher.group(2).length() + "d";
+        this.firstNumber = Long.parseLong(matcher.group(2));
+        starts.add(0L);
+        if (!openNext()) {
+            throw new SevenZipException("Volume not found: " + firstVolume);
+        }
+    }
+
+    private boolean openNext() throws SevenZipException {
+        IInStream volume = callback.getStream(prefix + String.format(counterFormat, firstNumber + volumes.size()));
+        if (volume == null) {
+            allOpened = true;
+            return false;
+        }
+        long length = volume.seek(0, SEEK_END);
+        volumes.add(volume);
+        starts.add(end() + length);
+        return true;
+    }
+
+    private long end() {
+        return starts.get(starts.size() - 1);
+    }
+
+    @Override
+    public long seek(long offset, int seekOrigin) throws SevenZipException {
+        long target = switch (seekOrigin) {
+            case SEEK_SET -> offset;
+            case SEEK_CUR -> position + offset;
+            case SEEK_END -> {
+                while (!allOpened) {
+                    openNext();
+                }
+                yield end() + offset;
+            }
+            default -> throw new SevenZipException("Seek: unknown origin: " + seekOrigin);
+        };
+        if (target < 0) {
+            throw new SevenZipException("Seek: negative position: " + target);
+        }
+        position = target;
+        return position;
+    }
+
+    @Override
+    public int read(byte[] data) throws SevenZipException {
+        while (position >= end() && !allOpened) {
+            openNext();
+        }
+        if (position >= end() || data.length == 0) {
+            return 0;
+        }
+        int index = volumes.size() - 1;
+        while (starts.get(index) > position) {
+            index--;
+        }
+        IInStream volume = volumes.get(index);
+        volume.seek(position - starts.get(index), SEEK_SET);
+        int read = volume.read(data);
+        position += read;
+        return read;
+    }
+
+    @Override
+    public void close() {
+        // the volumes belong to the callback
+    }
+}
@@ -0,0 +1,236 @@
+package com.underground.extractor.handler.impl;
+
+import com.underground.extractor.volume.VolumeSets;
+import net.sf.sevenzipjbinding.IInStream;
+import net.sf.sevenzipjbinding.SevenZipException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Warms the volumes following the one 7-Zip is reading through, so the decoder doesn't stall on a cold read at
+ * every volume boundary. Java has no {@code posix_fadvise}, the volumes are read once in the background, which
+ * leaves them in the page cache. Opening an archive only touches the headers of its volumes, so warming starts
+ * once a volume is read sequentially. The bytes being warmed at once are limited by a budget, a volume that
+ * doesn't fit is warmed as far as the budget goes and continued from there the next time.
+ */
+class VolumePrefetcher {
+
+    private static final int READ_BUFFER_SIZE = 1024 * 1024;
+    /**
+     * Sequential bytes after which a volume counts as read through, at most half of the volume
+     */
+    private static final long SEQUENTIAL_TRIGGER = 4L * 1024 * 1024;
+    /**
+     * Volumes whose warmed length is remembered, all are forgotten past that
+     */
+    private static final int MAX_REMEMBERED = 256;
+
+    Logger logger = LoggerFactory.getLogger(VolumePrefetcher.class);
+
+    private final ExecutorService executor;
+    private final AtomicLong budget;
+    private final int volumesAhead;
+    /**
+     * Bytes warmed of each volume from its start
+     */
+    private final Map<String, Long> warmed = new HashMap<>();
+    private final Set<String> warming = new HashSet<>();
+    private final AtomicLong prefetched = new AtomicLong();
+
+    /**
+     * @param budgetBytes  most bytes warmed at the same time
+     * @param volumesAhead how many of the following volumes to warm
+     */
+    VolumePrefetcher(long budgetBytes, int volumesAhead) {
+        this.budget = new AtomicLong(budgetBytes);
+        this.volumesAhead = volumesAhead;
+        this.executor = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "volume-prefetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Wraps the stream 7-Zip reads the volume through, to warm the following volumes once it reads sequentially.
+     */
+    IInStream track(String volume, long size, IInStream stream) {
+        return new TrackedInStream(volume, Math.min(SEQUENTIAL_TRIGGER, Math.max(1, size / 2)), stream);
+    }
+
+    /**
+     * Called once a volume is read sequentially, warms the volumes that come next.
+     */
+    void readingSequentially(String volume) {
+        File next = new File(volume);
+        forget(next.getAbsolutePath());
+        for (int i = 0; i < volumesAhead; i++) {
+            next = VolumeSets.following(next);
+            if (next == null || !next.isFile() || !prefetch(next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return {@code false} if the budget is used up
+     */
+    private boolean prefetch(File file) {
+        String path = file.getAbsolutePath();
+        long size = file.length();
+        Long from = claim(path);
+        if (from == null || from >= size) {
+            // being warmed already, or warmed completely
+            release(path, from);
+            return true;
+        }
+        long length = reserve(size - from);
+        if (length == 0) {
+            logger.debug("Not prefetching '{}', over budget", file);
+            release(path, from);
+            return false;
+        }
+        executor.execute(() -> {
+            long end = from;
+            try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+                channel.position(from);
+                while (end < from + length) {
+                    buffer.limit((int) Math.min(READ_BUFFER_SIZE, from + length - end));
+                    int read = channel.read(buffer);
+                    if (read <= 0) {
+                        break;
+                    }
+                    end += read;
+                    prefetched.addAndGet(read);
+                    buffer.clear();
+                }
+            } catch (IOException e) {
+                logger.debug("Could not prefetch '{}': {}", file, e.getMessage());
+            } finally {
+                release(path, end);
+                budget.addAndGet(length);
+            }
+        });
+        return length == size - from;
+    }
+
+    /**
+     * @return the bytes warmed of the volume before, {@code null} if it is being warmed right now
+     */
+    private synchronized Long claim(String path) {
+        if (warming.contains(path)) {
+            return null;
+        }
+        warming.add(path);
+        return warmed.getOrDefault(path, 0L);
+    }
+
+    /**
+     * @param warmedLength {@code null} if the volume wasn't claimed
+     */
+    private synchronized void release(String path, Long warmedLength) {
+        if (warmedLength == null) {
+            return;
+        }
+        warming.remove(path);
+        if (warmed.size() >= MAX_REMEMBERED) {
+            warmed.clear();
+        }
+        warmed.put(path, warmedLength);
+    }
+
+    /**
+     * The volume is read now, what was warmed of it is of no use anymore
+     */
+    private synchronized void forget(String path) {
+        warmed.remove(path);
+    }
+
+    /**
+     * @return the bytes reserved, as many as wanted if the budget allows, else what is left of it
+     */
+    private long reserve(long wanted) {
+        long available;
+        long reserved;
+        do {
+            available = budget.get();
+            reserved = Math.min(available, wanted);
+            if (reserved <= 0) {
+                return 0;
+            }
+        } while (!budget.compareAndSet(available, available - reserved));
+        return reserved;
+    }
+
+    /**
+     * Bytes read ahead so far
+     */
+    long prefetchedBytes() {
+        return prefetched.get();
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Follows the reads of 7-Zip on a volume. Headers are read here and there, a run of reads each starting where
+     * the previous one ended is a volume being read through.
+     */
+    private class TrackedInStream implements IInStream {
+
+        private final String volume;
+        private final long trigger;
+        private final IInStream stream;
+        private long position;
+        private long runStart;
+        private long runEnd = -1;
+        private boolean triggered;
+
+        TrackedInStream(String volume, long trigger, IInStream stream) {
+            this.volume = volume;
+            this.trigger = trigger;
+            this.stream = stream;
+        }
+
+        @Override
+        public long seek(long offset, int seekOrigin) throws SevenZipException {
+            position = stream.seek(offset, seekOrigin);
+            return position;
+        }
+
+        @Override
+        public int read(byte[] data) throws SevenZipException {
+            int read = stream.read(data);
+            if (position != runEnd) {
+                runStart = position;
+            }
+            position += read;
+            runEnd = position;
+            if (!triggered && runEnd - runStart >= trigger) {
+                triggered = true;
+                readingSequentially(volume);
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.underground.extractor.handler.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.time.Duration;
+
+/**
+ * Waits for a volume that is still being transferred: until it exists and hasn't grown for a quiet period,
+ * or until the timeout passes. A file not modified for the quiet period is taken as complete right away.
+ */
+class VolumeWait {
+
+    private static final long POLL_MILLIS = 250;
+
+    Logger logger = LoggerFactory.getLogger(VolumeWait.class);
+
+    private final Duration timeout;
+    private final Duration quietPeriod;
+
+    VolumeWait(Duration timeout, Duration quietPeriod) {
+        this.timeout = timeout;
+        this.quietPeriod = quietPeriod;
+    }
+
+    /**
+     * @return {@code true} if the volume is there and complete, {@code false} if the timeout passed first
+     */
+    boolean await(File volume) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        long quietMillis = quietPeriod.toMillis();
+        long lastSize = -1;
+        long unchangedSince = 0;
+        boolean waited = false;
+        while (true) {
+            if (volume.isFile()) {
+                long now = System.currentTimeMillis();
+                long size = volume.length();
+                if (now - volume.lastModified() >= quietMillis
+                        || size == lastSize && now - unchangedSince >= quietMillis) {
+                    if (waited) {
+                        logger.info("Volume '{}' arrived", volume.getName());
+                    }
+                    return true;
+                }
+                if (size != lastSize) {
+                    lastSize = size;
+                    unchangedSince = now;
+                }
+            }
+            if (System.nanoTime() >= deadline) {
+                logger.warn("Gave up waiting for volume '{}'", volume.getName());
+                return false;
+            }
+            if (!waited) {
+                logger.info("Waiting for volume '{}'", volume.getName());
+                waited = true;
+            }
+            try {
+                Thread.sleep(POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+}
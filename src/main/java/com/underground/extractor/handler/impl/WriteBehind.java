@@ -0,0 +1,54 @@
+package com.underground.extractor.handler.impl;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes filled buffers on a dedicated thread, so 7-Zip decodes the next block while the previous one
+ * goes to disk. The buffers form a bounded ring: once all of them wait to be written, the decoder blocks
+ * until the disk catches up. One instance serves one device, its single thread keeps the writes in order.
+ */
+class WriteBehind implements Closeable {
+
+    private final BlockingQueue<ByteBuffer> free;
+    private final ExecutorService writer;
+
+    WriteBehind(String name, int bufferSize, int buffers) {
+        this.free = new ArrayBlockingQueue<>(buffers);
+        for (int i = 0; i < buffers; i++) {
+            free.add(ByteBuffer.allocateDirect(bufferSize));
+        }
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "write-behind-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Takes a free buffer, waiting while all of them are queued for writing.
+     */
+    ByteBuffer acquire() throws InterruptedException {
+        return free.take();
+    }
+
+    void release(ByteBuffer buffer) {
+        buffer.clear();
+        free.offer(buffer);
+    }
+
+    <T> Future<T> submit(Callable<T> write) {
+        return writer.submit(write);
+    }
+
+    @Override
+    public void close() {
+        writer.shutdown();
+    }
+}
@@ -1,29 +1,107 @@
 package com.underground.extractor.handler.impl;
 
+import com.underground.extractor.handler.AttemptResult;
+import com.underground.extractor.handler.CorruptArchiveException;
+import com.underground.extractor.handler.EntryFilter;
+import com.underground.extractor.handler.ExtractionSettings;
 import com.underground.extractor.handler.IArchiveExtractor;
+import com.underground.extractor.handler.IAttemptSession;
 import com.underground.extractor.handler.WrongPassException;
+import com.underground.extractor.handler.verifier.DerivedKeyCache;
+import com.underground.extractor.handler.verifier.PasswordVerifier;
+import com.underground.extractor.handler.verifier.PasswordVerifiers;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import net.sf.sevenzipjbinding.*;
-import net.sf.sevenzipjbinding.impl.RandomAccessFileInStream;
-import net.sf.sevenzipjbinding.impl.VolumedArchiveInStream;
-import org.apache.commons.io.FilenameUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.io.Serial;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
 
 @Component
 public class ZipHandler7ZipImpl implements IArchiveExtractor {
 
     public static final String EXCEPTION_MSG_WRONG_PASS = "Custom: WRONG_PASSWORD";
-    public File outputDirectoryFile;
     Logger logger = LoggerFactory.getLogger(ZipHandler7ZipImpl.class);
-    private String archive;
-    private String outputDirectory;
+
+    /**
+     * Pure-Java password pre-checks, built once per archive and kept until {@link #release(File)}
+     */
+    private final Map<String, PasswordVerifier> verifiers = new ConcurrentHashMap<>();
+
+    /**
+     * Sessions of archives still waiting for their password, kept until {@link #release(File)}
+     */
+    private final Map<String, AttemptSession> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Formats told from the signatures of the archives, kept until {@link #release(File)}
+     */
+    private final Map<String, Optional<ArchiveFormat>> formats = new ConcurrentHashMap<>();
+
+    /**
+     * Keys derived by the verifiers, shared by all volumes and archives of a batch
+     */
+    private final DerivedKeyCache keyCache = new DerivedKeyCache(4096, 64L * 1024 * 1024);
+
+    /**
+     * Write buffers of extracted entries, shared by all extraction threads
+     */
+    final DirectBufferPool bufferPool = new DirectBufferPool(1024 * 1024, 16);
+
+    @Value("${extractor.write-buffer-kb:1024}")
+    private int writeBufferKb = 1024;
+
+    /**
+     * Buffers each device may have queued for writing, {@code 0} writes on the decoding thread
+     */
+    @Value("${extractor.write-behind.buffers:0}")
+    private int writeBehindBuffers = 0;
+
+    private final Map<FileStore, WriteBehind> writeBehinds = new ConcurrentHashMap<>();
+
+    /**
+     * Whether archives are read through memory mappings, on Windows mapped files can't be removed
+     * until the mapping is garbage collected
+     */
+    @Value("${extractor.mmap-input:true}")
+    private boolean mapInput = true;
+
+    @Value("${extractor.prefetch.budget-mb:256}")
+    private long prefetchBudgetMb = 256;
+
+    @Value("${extractor.prefetch.volumes-ahead:1}")
+    private int prefetchVolumesAhead = 1;
+
+    /**
+     * Warms the next volumes of multipart archives while extracting, {@code null} if disabled
+     */
+    private VolumePrefetcher prefetcher;
+
+    /**
+     * How long a still growing volume has to stay unchanged to be taken as complete
+     */
+    @Value("${extractor.volume-wait.quiet-seconds:2}")
+    private long volumeQuietSeconds = 2;
+
+    @Value("${extractor.key-cache.max-entries:4096}")
+    private int keyCacheMaxEntries = 4096;
+
+    @Value("${extractor.key-cache.max-mb:64}")
+    private long keyCacheMaxMb = 64;
 
     @PostConstruct
     public void afterInit() {
@@ -33,10 +111,49 @@ public class ZipHandler7ZipImpl implements IArchiveExtractor {
         } catch (SevenZipNativeInitializationException e) {
             e.printStackTrace();
         }
+        keyCache.setLimits(keyCacheMaxEntries, keyCacheMaxMb * 1024 * 1024);
+        bufferPool.setBufferSize(writeBufferKb * 1024);
+        if (prefetchBudgetMb > 0 && prefetchVolumesAhead > 0) {
+            prefetcher = new VolumePrefetcher(prefetchBudgetMb * 1024 * 1024, prefetchVolumesAhead);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writeBehinds.values().forEach(WriteBehind::close);
+        if (prefetcher != null) {
+            prefetcher.shutdown();
+        }
+    }
+
+    /**
+     * Returns the write-behind stage of the device the directory is on, or {@code null} if disabled.
+     */
+    private WriteBehind writeBehindFor(File outputDirectoryFile) {
+        if (writeBehindBuffers <= 0) {
+            return null;
+        }
+        try {
+            FileStore store = Files.getFileStore(outputDirectoryFile.toPath());
+            return writeBehinds.computeIfAbsent(store,
+                    device -> new WriteBehind(device.name(), bufferPool.bufferSize(), writeBehindBuffers));
+        } catch (IOException e) {
+            logger.debug("Writing '{}' without write-behind: {}", outputDirectoryFile, e.getMessage());
+            return null;
+        }
     }
 
-    private void prepareOutputDirectory() {
-        outputDirectoryFile = new File(outputDirectory);
+    /**
+     * @param prefetch whether to warm the following volumes, only worth it when reading whole volumes
+     */
+    InputOptions inputOptions(ExtractionContext context, boolean prefetch) {
+        Duration timeout = context.settings.volumeWait();
+        // volumes have to be present already without a timeout
+        VolumeWait volumeWait = timeout.isZero() ? null : new VolumeWait(timeout, Duration.ofSeconds(volumeQuietSeconds));
+        return new InputOptions(mapInput, prefetch ? prefetcher : null, volumeWait);
+    }
+
+    private void prepareOutputDirectory(File outputDirectoryFile) {
         if (!outputDirectoryFile.exists()) {
             if (outputDirectoryFile.mkdirs()) {
                 logger.info("Created output directory");
@@ -48,73 +165,305 @@ public class ZipHandler7ZipImpl implements IArchiveExtractor {
         }
     }
 
-    private void doExtract(String password, IInStream streamProcessor, IArchiveOpenCallback callback) throws ExtractionException, WrongPassException {
-        IInArchive inArchive;
+    /**
+     * Returns the index of the smallest encrypted file entry, or -1 if no entry is encrypted.
+     */
+    int findSmallestEncryptedEntry(IInArchive inArchive) throws SevenZipException {
+        int smallestIndex = -1;
+        long smallestSize = Long.MAX_VALUE;
+        for (int i = 0; i < inArchive.getNumberOfItems(); i++) {
+            if (Boolean.TRUE.equals(inArchive.getProperty(i, PropID.IS_FOLDER))
+                    || !Boolean.TRUE.equals(inArchive.getProperty(i, PropID.ENCRYPTED))) {
+                continue;
+            }
+            Long size = (Long) inArchive.getProperty(i, PropID.SIZE);
+            long entrySize = size != null ? size : Long.MAX_VALUE - 1;
+            if (entrySize < smallestSize) {
+                smallestSize = entrySize;
+                smallestIndex = i;
+            }
+        }
+        return smallestIndex;
+    }
+
+    /**
+     * Verifies the password by decoding only the smallest encrypted entry in test mode,
+     * so a wrong candidate never touches the output directory.
+     * Archives with encrypted headers are already verified by opening them.
+     */
+    private void probe(ExtractionContext context, IInArchive inArchive, String password) throws SevenZipException {
+        int index = findSmallestEncryptedEntry(inArchive);
+        if (index < 0) {
+            return;
+        }
+        inArchive.extract(new int[]{index}, true, new ExtractCallback(this, context, inArchive, password));
+    }
+
+    /**
+     * Opens the archive with the codec of its format, told from the signature once per archive.
+     */
+    IInArchive openInArchive(ExtractionContext context, ArchiveInput input, String password) throws WrongPassException, CorruptArchiveException {
+        ArchiveFormat format = formats.computeIfAbsent(context.archive, archive -> Optional.ofNullable(input.sniffFormat()))
+                .orElse(null);
+        try {
+            return input.openInArchive(format, password);
+        } catch (SevenZipException e) {
+            // only an archive asking for the password while opening can have failed because of it
+            if (input.passwordAsked()) {
+                throw WrongPassException.signal();
+            }
+            throw new CorruptArchiveException("Archive '" + context.archive + "' can't be opened"
+                    + (format != null ? " as " + format : "") + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void doExtract(ExtractionContext context, String password, ArchiveInput input) throws ExtractionException, WrongPassException, CorruptArchiveException {
+        IInArchive inArchive = openInArchive(context, input, password);
         try {
-            if (callback != null) {
-                inArchive = SevenZip.openInArchive(null, streamProcessor, callback);
-            } else {
-                inArchive = SevenZip.openInArchive(null, streamProcessor, password);
+            probe(context, inArchive, password);
+            if (context.isTestOnly()) {
+                return;
+            }
+            //password confirmed, only now run the real extraction
+            prepareOutputDirectory(context.outputDirectoryFile);
+            try (ExtractionJournal journal = openJournal(context)) {
+                // only the entries not extracted by an interrupted run before
+                int[] indices = selected(context, inArchive, journal != null ? journal.missing(inArchive) : null);
+                var callback = new ExtractCallback(this, context, inArchive, password)
+                        .writeBehind(writeBehindFor(context.outputDirectoryFile))
+                        .journal(journal);
+                try {
+                    if (indices == null || indices.length > 0) {
+                        inArchive.extract(indices, false, callback);
+                    }
+                } finally {
+                    callback.awaitWrites();
+                }
+                if (journal != null) {
+                    finishJournal(journal);
+                }
             }
-            inArchive.extract(null, false, new ExtractCallback(this, inArchive, password));
         } catch (SevenZipException e) {
-            //TODO check for error when opening archive
-            if (e.getMessage().contains("Archive file can't be opened with any of the registered codecs")
-                    || e.getCause().getMessage().equals(ZipHandler7ZipImpl.EXCEPTION_MSG_WRONG_PASS)) {
-                throw new WrongPassException();
+            rethrow(context, e);
+        } finally {
+            try {
+                inArchive.close();
+            } catch (SevenZipException e) {
+                logger.warn("Could not close archive '{}'", context.archive);
             }
-            StringBuilder stringBuilder = new StringBuilder();
-            stringBuilder.append("Error extracting archive '");
-            stringBuilder.append(archive);
-            stringBuilder.append("': ");
-            stringBuilder.append(e.getMessage());
-            if (e.getCause() != null) {
-                stringBuilder.append(" (");
-                stringBuilder.append(e.getCause().getMessage());
-                stringBuilder.append(')');
+        }
+    }
+
+    /**
+     * Narrows the indexes to the entries the filter accepts, folders are created along with their files.
+     *
+     * @param indices {@code null} for all entries
+     * @return {@code null} for all entries
+     */
+    int[] selected(ExtractionContext context, IInArchive inArchive, int[] indices) throws SevenZipException {
+        EntryFilter filter = context.settings.entryFilter();
+        if (filter.isAll()) {
+            return indices;
+        }
+        int[] candidates = indices != null ? indices : IntStream.range(0, inArchive.getNumberOfItems()).toArray();
+        List<Integer> selected = new ArrayList<>();
+        for (int index : candidates) {
+            if (Boolean.TRUE.equals(inArchive.getProperty(index, PropID.IS_FOLDER))) {
+                continue;
             }
-            String message = stringBuilder.toString();
+            if (filter.accepts((String) inArchive.getProperty(index, PropID.PATH), (Long) inArchive.getProperty(index, PropID.SIZE))) {
+                selected.add(index);
+            }
+        }
+        logger.info("Extracting {} of {} entries of '{}'", selected.size(), inArchive.getNumberOfItems(), context.archive);
+        return selected.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @return {@code null} if the journal can't be written, the extraction can't be resumed then
+     */
+    private ExtractionJournal openJournal(ExtractionContext context) {
+        try {
+            return ExtractionJournal.open(context);
+        } catch (IOException e) {
+            logger.warn("Could not open the extraction journal of '{}': {}", context.archive, e.getMessage());
+            return null;
+        }
+    }
+
+    private void finishJournal(ExtractionJournal journal) {
+        try {
+            journal.finish();
+        } catch (IOException e) {
+            logger.warn("Could not remove the extraction journal: {}", e.getMessage());
+        }
+    }
 
-            throw new ExtractionException(message, e);
+    /**
+     * Translates a failure reported by 7-Zip into a wrong password or an extraction error.
+     */
+    void rethrow(ExtractionContext context, SevenZipException e) throws WrongPassException, ExtractionException {
+        if (e.getCause() instanceof WrongPassSignal) {
+            throw WrongPassException.signal();
+        }
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append("Error extracting archive '");
+        stringBuilder.append(context.archive);
+        stringBuilder.append("': ");
+        stringBuilder.append(e.getMessage());
+        if (e.getCause() != null) {
+            stringBuilder.append(" (");
+            stringBuilder.append(e.getCause().getMessage());
+            stringBuilder.append(')');
         }
+        String message = stringBuilder.toString();
+
+        throw new ExtractionException(message, e);
     }
 
 
     @Override
-    public boolean extractArchive(File archiveFile, String archivePassword, String outputDir) throws WrongPassException, ExtractionException {
-        this.archive = archiveFile.getAbsolutePath();
-        this.outputDirectoryFile = new File(outputDir);
-        this.outputDirectory = outputDir;
-        prepareOutputDirectory();
-
-        try (var file = new RandomAccessFile(archive, "r")) {
-            doExtract(archivePassword, new RandomAccessFileInStream(file), null);
-        } catch (FileNotFoundException e) {
-            throw new ExtractionException("File not found", e);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    public boolean extractArchive(File archiveFile, String archivePassword, String outputDir) throws WrongPassException, ExtractionException, CorruptArchiveException {
+        return extractArchive(archiveFile, archivePassword, outputDir, ExtractionSettings.DEFAULT);
+    }
+
+    @Override
+    public boolean extractMultipartArchive(File archiveFile, String archivePassword, String outputDir) throws WrongPassException, ExtractionException, CorruptArchiveException {
+        return extractMultipartArchive(archiveFile, archivePassword, outputDir, ExtractionSettings.DEFAULT);
+    }
+
+    @Override
+    public boolean extractArchive(File archiveFile, String archivePassword, String outputDir, ExtractionSettings settings) throws WrongPassException, ExtractionException, CorruptArchiveException {
+        return attemptThenExtract(new ExtractionContext(archiveFile, outputDir, settings), archivePassword, false);
+    }
+
+    @Override
+    public boolean extractMultipartArchive(File archiveFile, String archivePassword, String outputDir, ExtractionSettings settings) throws WrongPassException, ExtractionException, CorruptArchiveException {
+        return attemptThenExtract(new ExtractionContext(archiveFile, outputDir, settings), archivePassword, true);
+    }
+
+    @Override
+    public boolean testArchive(File archiveFile, String archivePassword) throws WrongPassException, ExtractionException, CorruptArchiveException {
+        return attempt(new ExtractionContext(archiveFile, null), archivePassword, false);
+    }
+
+    @Override
+    public boolean testMultipartArchive(File archiveFile, String archivePassword) throws WrongPassException, ExtractionException, CorruptArchiveException {
+        return attempt(new ExtractionContext(archiveFile, null), archivePassword, true);
+    }
+
+    @Override
+    public IAttemptSession openSession(File archiveFile, boolean multipart) throws ExtractionException, CorruptArchiveException {
+        return openSession(archiveFile, multipart, ExtractionSettings.DEFAULT);
+    }
+
+    @Override
+    public IAttemptSession openSession(File archiveFile, boolean multipart, ExtractionSettings settings) throws ExtractionException, CorruptArchiveException {
+        return AttemptSession.open(this, new ExtractionContext(archiveFile, null, settings), multipart);
+    }
+
+    @Override
+    public void release(File archiveFile) {
+        verifiers.remove(archiveFile.getAbsolutePath());
+        formats.remove(archiveFile.getAbsolutePath());
+        AttemptSession session = sessions.remove(archiveFile.getAbsolutePath());
+        if (session != null) {
+            synchronized (session) {
+                session.close();
+            }
         }
-        return true;
     }
 
     @Override
-    public boolean extractMultipartArchive(File archiveFile, String archivePassword, String outputDir) throws WrongPassException, ExtractionException {
-        this.archive = archiveFile.getAbsolutePath();
-        this.outputDirectoryFile = new File(outputDir);
-        this.outputDirectory = outputDir;
-        prepareOutputDirectory();
+    public AttemptResult attemptPassword(File archiveFile, String archivePassword, boolean multipart) {
+        AttemptSession session;
         try {
-            var extension = FilenameUtils.getExtension(archive);
-            var callback = new MultipartArchiveOpenCallback();
-            if (extension.equals("rar")) {
-                IInStream inStream = callback.getStream(archive);
-                doExtract(archivePassword, inStream, callback);
-            } else {
-                doExtract(archivePassword, new VolumedArchiveInStream(archive, callback), null);
+            session = cachedSession(new ExtractionContext(archiveFile, null), multipart);
+        } catch (ExtractionException | CorruptArchiveException e) {
+            logger.debug("Could not open '{}': {}", archiveFile, e.getMessage());
+            return AttemptResult.CORRUPT;
+        }
+        synchronized (session) {
+            return session.attempt(archivePassword);
+        }
+    }
+
+    /**
+     * Rejects the password without opening the archive in 7-Zip, if a pure-Java check can tell it is wrong.
+     */
+    void verify(ExtractionContext context, String archivePassword) throws WrongPassException {
+        if (!mayMatch(context, archivePassword)) {
+            throw WrongPassException.signal();
+        }
+    }
+
+    boolean mayMatch(ExtractionContext context, String archivePassword) {
+        PasswordVerifier verifier = verifiers.computeIfAbsent(context.archive,
+                archive -> PasswordVerifiers.forArchive(new File(archive), keyCache));
+        return verifier.mayMatch(archivePassword);
+    }
+
+    /**
+     * @param context whose archive to open, only to test passwords on, with the settings of the call
+     */
+    private AttemptSession cachedSession(ExtractionContext context, boolean multipart) throws ExtractionException, CorruptArchiveException {
+        String key = context.archive;
+        AttemptSession session = sessions.get(key);
+        if (session == null) {
+            session = AttemptSession.open(this, context, multipart);
+            AttemptSession existing = sessions.putIfAbsent(key, session);
+            if (existing != null) {
+                session.close();
+                session = existing;
             }
-        } catch (SevenZipException e) {//TODO
-            throw new RuntimeException(e);
+        }
+        return session;
+    }
+
+    /**
+     * Tries the password on the archive kept open between calls, the archive is read from disk only once
+     * no matter how many wrong passwords come before the right one.
+     */
+    private boolean attempt(ExtractionContext context, String archivePassword, boolean multipart) throws WrongPassException, ExtractionException, CorruptArchiveException {
+        AttemptSession session = cachedSession(context, multipart);
+        synchronized (session) {
+            return session.tryPassword(archivePassword);
+        }
+    }
+
+    private boolean attemptThenExtract(ExtractionContext context, String archivePassword, boolean multipart) throws WrongPassException, ExtractionException, CorruptArchiveException {
+        File archiveFile = new File(context.archive);
+        attempt(new ExtractionContext(archiveFile, null, context.settings), archivePassword, multipart);
+        boolean extracted = process(context, archivePassword, multipart);
+        release(archiveFile);
+        return extracted;
+    }
+
+    boolean process(ExtractionContext context, String archivePassword, boolean multipart) throws WrongPassException, ExtractionException, CorruptArchiveException {
+        verify(context, archivePassword);
+        try (var input = ArchiveInput.open(context.archive, multipart, inputOptions(context, !context.isTestOnly()))) {
+            doExtract(context, archivePassword, input);
+        } catch (IOException e) {
+            logger.warn("Could not close '{}'", context.archive);
         }
         return true;
     }
+
+    /**
+     * Thrown by the extract callback for a wrong password and recognized by its type. It skips the stack trace,
+     * but can't be shared: 7-Zip-JBinding attaches exceptions thrown later on to the one thrown before.
+     */
+    static class WrongPassSignal extends SevenZipException {
+        @Serial
+        private static final long serialVersionUID = 2291471409163853062L;
+
+        WrongPassSignal() {
+            super(EXCEPTION_MSG_WRONG_PASS);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
 }
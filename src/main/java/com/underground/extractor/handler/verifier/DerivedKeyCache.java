@@ -0,0 +1,85 @@
+package com.underground.extractor.handler.verifier;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Least recently used cache of derived keys, keyed by (key derivation, password, salt, iterations).
+ * Key derivation is deliberately slow, while volumes of one archive and archives made by the same tool
+ * often share the salt, so the same derivation would otherwise be repeated over and over.
+ * The cache is bounded both by the number of entries and by their estimated memory footprint.
+ */
+public class DerivedKeyCache {
+
+    /**
+     * Rough per entry overhead of the map node, key record, string and arrays
+     */
+    private static final int ENTRY_OVERHEAD = 160;
+
+    private final Map<Key, byte[]> keys = new LinkedHashMap<>(16, 0.75f, true);
+    private int maxEntries;
+    private long maxBytes;
+    private long usedBytes;
+
+    public DerivedKeyCache(int maxEntries, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    public void setLimits(int maxEntries, long maxBytes) {
+        synchronized (keys) {
+            this.maxEntries = maxEntries;
+            this.maxBytes = maxBytes;
+            evict();
+        }
+    }
+
+    /**
+     * Returns the cached key or derives it. The derivation runs outside the lock, so two threads
+     * may occasionally derive the same key, which is cheaper than making one wait for the other.
+     */
+    public byte[] computeIfAbsent(String kdf, String password, byte[] salt, int iterations, Supplier<byte[]> derivation) {
+        Key key = new Key(kdf, password, ByteBuffer.wrap(salt.clone()), iterations);
+        synchronized (keys) {
+            byte[] cached = keys.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        byte[] derived = derivation.get();
+        if (derived != null) {
+            synchronized (keys) {
+                if (keys.put(key, derived) == null) {
+                    usedBytes += sizeOf(key, derived);
+                    evict();
+                }
+            }
+        }
+        return derived;
+    }
+
+    public int size() {
+        synchronized (keys) {
+            return keys.size();
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Key, byte[]>> eldest = keys.entrySet().iterator();
+        while (eldest.hasNext() && (keys.size() > maxEntries || usedBytes > maxBytes)) {
+            Map.Entry<Key, byte[]> entry = eldest.next();
+            usedBytes -= sizeOf(entry.getKey(), entry.getValue());
+            eldest.remove();
+        }
+    }
+
+    private static long sizeOf(Key key, byte[] derived) {
+        return ENTRY_OVERHEAD + 2L * key.password().length() + key.salt().capacity() + derived.length;
+    }
+
+    private record Key(String kdf, String password, ByteBuffer salt, int iterations) {
+    }
+}
@@ -0,0 +1,16 @@
+package com.underground.extractor.handler.verifier;
+
+/**
+ * Cheap pure-Java pre-check of a candidate password, done before the archive is handed to 7-Zip.
+ * A verifier may let wrong passwords through (they are rejected by 7-Zip later),
+ * but it must never reject the right one.
+ */
+public interface PasswordVerifier {
+
+    PasswordVerifier ACCEPT_ALL = password -> true;
+
+    /**
+     * @return false if the password is certainly wrong
+     */
+    boolean mayMatch(String password);
+}
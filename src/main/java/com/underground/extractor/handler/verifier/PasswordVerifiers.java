@@ -0,0 +1,47 @@
+package com.underground.extractor.handler.verifier;
+
+import com.underground.extractor.volume.VolumeSets;
+import org.apache.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Picks the verifier that fits the archive, falling back to {@link PasswordVerifier#ACCEPT_ALL}.
+ */
+public class PasswordVerifiers {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordVerifiers.class);
+
+    private PasswordVerifiers() {
+    }
+
+    public static PasswordVerifier forArchive(File archive, DerivedKeyCache keyCache) {
+        String name = archive.getName().toLowerCase();
+        String extension = FilenameUtils.getExtension(name);
+        String split = VolumeSets.splitArchive(name);
+        try {
+            // the central directory of a split zip is at the end of its last volume
+            if (extension.equals("zip") && !splitZipVolume(archive).exists()) {
+                return ZipPasswordVerifier.of(archive);
+            }
+            if (extension.equals("rar")) {
+                return Rar5PasswordVerifier.of(archive, keyCache);
+            }
+            if (extension.equals("7z") || extension.equals("7zip")
+                    || split != null && FilenameUtils.isExtension(split, List.of("7z", "7zip"))) {
+                return SevenZipPasswordVerifier.of(archive, keyCache);
+            }
+        } catch (IOException e) {
+            logger.debug("No password pre-check for {}: {}", archive.getName(), e.getMessage());
+        }
+        return PasswordVerifier.ACCEPT_ALL;
+    }
+
+    private static File splitZipVolume(File archive) {
+        return new File(archive.getParentFile(), FilenameUtils.getBaseName(archive.getName()) + ".z01");
+    }
+}
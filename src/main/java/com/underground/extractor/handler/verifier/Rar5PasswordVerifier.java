@@ -0,0 +1,212 @@
+package com.underground.extractor.handler.verifier;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Validates candidates against the password check value of a RAR5 archive, found either in the archive
+ * encryption header (encrypted file names) or in the encryption record of the first encrypted file.
+ * The check value is derived with PBKDF2-HMAC-SHA256 from the stored salt: after the usual iterations
+ * produce the key, 32 more rounds give the value that is folded into the 8 stored check bytes.
+ */
+public class Rar5PasswordVerifier implements PasswordVerifier {
+
+    private static final byte[] SIGNATURE = {0x52, 0x61, 0x72, 0x21, 0x1A, 0x07, 0x01, 0x00};
+    private static final int HEADER_ARCHIVE_ENCRYPTION = 4;
+    private static final int HEADER_FILE = 2;
+    private static final int HEADER_END = 5;
+    private static final int EXTRA_FILE_ENCRYPTION = 1;
+    private static final int FLAG_EXTRA_AREA = 0x0001;
+    private static final int FLAG_DATA_AREA = 0x0002;
+    private static final int ENCRYPTION_FLAG_CHECK_PRESENT = 0x0001;
+    private static final int MAX_KDF_COUNT = 24;
+    private static final int MAX_HEADER_SIZE = 2 * 1024 * 1024;
+    private static final int SALT_SIZE = 16;
+    private static final int CHECK_SIZE = 8;
+
+    private final byte[] salt;
+    private final int iterations;
+    private final byte[] check;
+    private final DerivedKeyCache keyCache;
+
+    private Rar5PasswordVerifier(byte[] salt, int kdfCount, byte[] check, DerivedKeyCache keyCache) {
+        this.salt = salt;
+        this.iterations = 1 << kdfCount;
+        this.check = check;
+        this.keyCache = keyCache;
+    }
+
+    /**
+     * Walks the headers up to the first password check value. Only the first volume of a multipart archive
+     * needs to be read, the rest share its salt.
+     *
+     * @return {@link PasswordVerifier#ACCEPT_ALL} if the archive is not RAR5 or carries no check value
+     */
+    public static PasswordVerifier of(File archive, DerivedKeyCache keyCache) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(archive, "r")) {
+            byte[] signature = new byte[SIGNATURE.length];
+            if (file.read(signature) != signature.length || !Arrays.equals(signature, SIGNATURE)) {
+                return ACCEPT_ALL;
+            }
+            while (file.getFilePointer() < file.length()) {
+                file.skipBytes(4); // header CRC32
+                long headerSize = readVInt(file);
+                if (headerSize <= 0 || headerSize > MAX_HEADER_SIZE) {
+                    return ACCEPT_ALL;
+                }
+                byte[] header = new byte[(int) headerSize];
+                file.readFully(header);
+
+                HeaderReader reader = new HeaderReader(header);
+                long type = reader.vint();
+                long flags = reader.vint();
+                long extraSize = (flags & FLAG_EXTRA_AREA) != 0 ? reader.vint() : 0;
+                long dataSize = (flags & FLAG_DATA_AREA) != 0 ? reader.vint() : 0;
+
+                if (type == HEADER_ARCHIVE_ENCRYPTION) {
+                    return fromEncryptionRecord(reader, false, keyCache);
+                }
+                if (type == HEADER_FILE && extraSize > 0) {
+                    PasswordVerifier verifier = fromFileExtraArea(header, (int) (header.length - extraSize), keyCache);
+                    if (verifier != null) {
+                        return verifier;
+                    }
+                }
+                if (type == HEADER_END) {
+                    break;
+                }
+                file.seek(file.getFilePointer() + dataSize);
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Malformed RAR5 header", e);
+        }
+        return ACCEPT_ALL;
+    }
+
+    private static PasswordVerifier fromFileExtraArea(byte[] header, int extraStart, DerivedKeyCache keyCache) {
+        HeaderReader reader = new HeaderReader(header);
+        reader.position = extraStart;
+        while (reader.position < header.length) {
+            long recordSize = reader.vint();
+            int recordEnd = reader.position + (int) recordSize;
+            if (reader.vint() == EXTRA_FILE_ENCRYPTION) {
+                return fromEncryptionRecord(reader, true, keyCache);
+            }
+            reader.position = recordEnd;
+        }
+        return null;
+    }
+
+    private static PasswordVerifier fromEncryptionRecord(HeaderReader reader, boolean hasIv, DerivedKeyCache keyCache) {
+        reader.vint(); // encryption version, 0 = AES-256
+        long encryptionFlags = reader.vint();
+        int kdfCount = reader.header[reader.position++] & 0xff;
+        byte[] salt = reader.bytes(SALT_SIZE);
+        if (hasIv) {
+            reader.bytes(16);
+        }
+        if ((encryptionFlags & ENCRYPTION_FLAG_CHECK_PRESENT) == 0 || kdfCount > MAX_KDF_COUNT) {
+            return ACCEPT_ALL;
+        }
+        byte[] check = reader.bytes(CHECK_SIZE);
+        byte[] checksum = reader.bytes(4);
+        if (!Arrays.equals(Arrays.copyOf(sha256(check), 4), checksum)) {
+            // damaged check value, let 7-Zip decide
+            return ACCEPT_ALL;
+        }
+        return new Rar5PasswordVerifier(salt, kdfCount, check, keyCache);
+    }
+
+    @Override
+    public boolean mayMatch(String password) {
+        if (password.isEmpty()) {
+            return true;
+        }
+        byte[] derived = keyCache.computeIfAbsent("rar5", password, salt, iterations, () -> deriveCheckValue(password));
+        return derived == null || Arrays.equals(derived, check);
+    }
+
+    /**
+     * PBKDF2-HMAC-SHA256 continued for 32 rounds past the key, folded to {@link #CHECK_SIZE} bytes.
+     */
+    private byte[] deriveCheckValue(String password) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(password.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            mac.update(salt);
+            byte[] u = mac.doFinal(new byte[]{0, 0, 0, 1});
+            byte[] value = u.clone();
+            int rounds = iterations - 1 + 16 + 16;
+            for (int round = 0; round < rounds; round++) {
+                u = mac.doFinal(u);
+                for (int i = 0; i < value.length; i++) {
+                    value[i] ^= u[i];
+                }
+            }
+            byte[] folded = new byte[CHECK_SIZE];
+            for (int i = 0; i < value.length; i++) {
+                folded[i % CHECK_SIZE] ^= value[i];
+            }
+            return folded;
+        } catch (GeneralSecurityException e) {
+            return null;
+        }
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long readVInt(RandomAccessFile file) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = file.readUnsignedByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        return value;
+    }
+
+    private static class HeaderReader {
+        private final byte[] header;
+        private int position;
+
+        HeaderReader(byte[] header) {
+            this.header = header;
+        }
+
+        long vint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = header[position++] & 0xff;
+                value |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    break;
+                }
+            }
+            return value;
+        }
+
+        byte[] bytes(int count) {
+            if (position + count > header.length) {
+                throw new ArrayIndexOutOfBoundsException(position + count);
+            }
+            byte[] bytes = Arrays.copyOfRange(header, position, position + count);
+            position += count;
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,491 @@
+package com.underground.extractor.handler.verifier;
+
+import com.underground.extractor.volume.VolumeSets;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Rejects wrong passwords of a 7z archive by decrypting a single AES block in pure Java.
+ * 7z has no password check value, but the first decrypted byte is predictable: an encrypted header
+ * starts with the header marker, and LZMA / LZMA2 streams start with fixed range coder or chunk bytes.
+ * The expensive part, the 2^19 rounds of SHA-256 key derivation, goes through the {@link DerivedKeyCache}.
+ * <p>
+ * Archives whose header is LZMA compressed but not encrypted, which is what 7-Zip writes unless the header is
+ * encrypted too ({@code -mhe}), can't be read without an LZMA decoder. For those every candidate is let through
+ * and 7-Zip rejects the wrong ones.
+ */
+public class SevenZipPasswordVerifier implements PasswordVerifier {
+
+    private static final byte[] SIGNATURE = {'7', 'z', (byte) 0xBC, (byte) 0xAF, 0x27, 0x1C};
+    private static final int SIGNATURE_HEADER_SIZE = 32;
+    private static final int MAX_HEADER_SIZE = 64 * 1024 * 1024;
+    private static final int BLOCK_SIZE = 16;
+
+    private static final int ID_END = 0x00;
+    private static final int ID_HEADER = 0x01;
+    private static final int ID_ARCHIVE_PROPERTIES = 0x02;
+    private static final int ID_MAIN_STREAMS_INFO = 0x04;
+    private static final int ID_PACK_INFO = 0x06;
+    private static final int ID_UNPACK_INFO = 0x07;
+    private static final int ID_SIZE = 0x09;
+    private static final int ID_CRC = 0x0A;
+    private static final int ID_FOLDER = 0x0B;
+    private static final int ID_CODERS_UNPACK_SIZE = 0x0C;
+    private static final int ID_ENCODED_HEADER = 0x17;
+
+    private static final byte[] CODER_AES = {0x06, (byte) 0xF1, 0x07, 0x01};
+    private static final byte[] CODER_LZMA = {0x03, 0x01, 0x01};
+    private static final byte[] CODER_LZMA2 = {0x21};
+    private static final byte[] CODER_BZIP2 = {0x04, 0x02, 0x02};
+    private static final byte[] CODER_DEFLATE = {0x04, 0x01, 0x08};
+
+    /**
+     * What is expected right behind the decryption
+     */
+    private enum Plaintext {
+        HEADER, LZMA, LZMA2, BZIP2, DEFLATE
+    }
+
+    private final byte[] salt;
+    private final byte[] iv;
+    private final int numCyclesPower;
+    private final byte[] firstBlock;
+    private final Plaintext plaintext;
+    private final DerivedKeyCache keyCache;
+
+    private SevenZipPasswordVerifier(byte[] salt, byte[] iv, int numCyclesPower, byte[] firstBlock, Plaintext plaintext,
+                                     DerivedKeyCache keyCache) {
+        this.salt = salt;
+        this.iv = iv;
+        this.numCyclesPower = numCyclesPower;
+        this.firstBlock = firstBlock;
+        this.plaintext = plaintext;
+        this.keyCache = keyCache;
+    }
+
+    /**
+     * Reads the header of a 7z archive, or of the first volume of a split 7z archive (the header is
+     * at the end of the last volume, so all volumes that follow are read too).
+     *
+     * @return {@link PasswordVerifier#ACCEPT_ALL} if the archive is not encrypted or the header can't be parsed
+     */
+    public static PasswordVerifier of(File archive, DerivedKeyCache keyCache) throws IOException {
+        try (Volumes volumes = Volumes.open(archive)) {
+            byte[] signatureHeader = volumes.read(0, SIGNATURE_HEADER_SIZE);
+            if (!Arrays.equals(Arrays.copyOf(signatureHeader, SIGNATURE.length), SIGNATURE)) {
+                return ACCEPT_ALL;
+            }
+            HeaderReader signature = new HeaderReader(signatureHeader);
+            signature.position = 12;
+            long nextHeaderOffset = signature.uint64();
+            long nextHeaderSize = signature.uint64();
+            if (nextHeaderSize <= 0 || nextHeaderSize > MAX_HEADER_SIZE) {
+                return ACCEPT_ALL;
+            }
+            HeaderReader header = new HeaderReader(volumes.read(SIGNATURE_HEADER_SIZE + nextHeaderOffset, (int) nextHeaderSize));
+
+            int id = header.byte8();
+            boolean encodedHeader = id == ID_ENCODED_HEADER;
+            if (id == ID_HEADER) {
+                id = header.byte8();
+                if (id == ID_ARCHIVE_PROPERTIES) {
+                    skipArchiveProperties(header);
+                    id = header.byte8();
+                }
+                if (id != ID_MAIN_STREAMS_INFO) {
+                    return ACCEPT_ALL;
+                }
+            } else if (!encodedHeader) {
+                return ACCEPT_ALL;
+            }
+
+            StreamsInfo streams = StreamsInfo.read(header);
+            long packStreamOffset = SIGNATURE_HEADER_SIZE + streams.packPos;
+            int packStreamIndex = 0;
+            for (Folder folder : streams.folders) {
+                int aes = folder.indexOf(CODER_AES);
+                if (aes >= 0) {
+                    return forFolder(volumes, folder, aes, packStreamIndex, packStreamOffset, streams, encodedHeader, keyCache);
+                }
+                for (int i = 0; i < folder.packedStreams.length; i++) {
+                    packStreamOffset += streams.packSizes[packStreamIndex++];
+                }
+            }
+            return ACCEPT_ALL;
+        } catch (ArrayIndexOutOfBoundsException | EOFException e) {
+            throw new IOException("Malformed 7z header", e);
+        }
+    }
+
+    private static PasswordVerifier forFolder(Volumes volumes, Folder folder, int aes, int packStreamIndex,
+                                              long packStreamOffset, StreamsInfo streams, boolean encodedHeader,
+                                              DerivedKeyCache keyCache) throws IOException {
+        int aesInStream = folder.firstInStream(aes);
+        int aesOutStream = folder.firstOutStream(aes);
+        // the AES input has to come straight from a packed stream
+        for (int j = 0; j < folder.packedStreams.length; j++) {
+            if (folder.packedStreams[j] != aesInStream) {
+                packStreamOffset += streams.packSizes[packStreamIndex + j];
+                continue;
+            }
+            if (streams.packSizes[packStreamIndex + j] < BLOCK_SIZE) {
+                return ACCEPT_ALL;
+            }
+            Plaintext plaintext = plaintextOf(folder, aesOutStream, encodedHeader);
+            if (plaintext == null) {
+                return ACCEPT_ALL;
+            }
+            byte[] props = folder.properties[aes];
+            if (props.length < 1) {
+                return ACCEPT_ALL;
+            }
+            int numCyclesPower = props[0] & 0x3F;
+            byte[] salt = new byte[0];
+            byte[] iv = new byte[BLOCK_SIZE];
+            if ((props[0] & 0xC0) != 0) {
+                int saltSize = ((props[0] >> 7) & 1) + ((props[1] & 0xff) >> 4);
+                int ivSize = ((props[0] >> 6) & 1) + (props[1] & 0x0F);
+                salt = Arrays.copyOfRange(props, 2, 2 + saltSize);
+                System.arraycopy(props, 2 + saltSize, iv, 0, ivSize);
+            }
+            if (numCyclesPower > 24 && numCyclesPower != 0x3F) {
+                return ACCEPT_ALL;
+            }
+            byte[] firstBlock = volumes.read(packStreamOffset, BLOCK_SIZE);
+            return new SevenZipPasswordVerifier(salt, iv, numCyclesPower, firstBlock, plaintext, keyCache);
+        }
+        return ACCEPT_ALL;
+    }
+
+    /**
+     * Finds the coder that consumes the decrypted data, {@code null} if its first bytes are not predictable.
+     */
+    private static Plaintext plaintextOf(Folder folder, int aesOutStream, boolean encodedHeader) {
+        for (long[] bindPair : folder.bindPairs) {
+            if (bindPair[1] == aesOutStream) {
+                byte[] consumer = folder.coderIds[folder.coderOfInStream((int) bindPair[0])];
+                if (Arrays.equals(consumer, CODER_LZMA)) {
+                    return Plaintext.LZMA;
+                } else if (Arrays.equals(consumer, CODER_LZMA2)) {
+                    return Plaintext.LZMA2;
+                } else if (Arrays.equals(consumer, CODER_BZIP2)) {
+                    return Plaintext.BZIP2;
+                } else if (Arrays.equals(consumer, CODER_DEFLATE)) {
+                    return Plaintext.DEFLATE;
+                }
+                return null;
+            }
+        }
+        // decrypted data is the output of the folder itself
+        return encodedHeader ? Plaintext.HEADER : null;
+    }
+
+    @Override
+    public boolean mayMatch(String password) {
+        byte[] key = keyCache.computeIfAbsent("7zAES", password, salt, numCyclesPower, () -> deriveKey(password));
+        byte[] plain;
+        try {
+            Cipher cipher = Cipher.getInstance("AES/CBC/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+            plain = cipher.doFinal(firstBlock);
+        } catch (GeneralSecurityException e) {
+            return true;
+        }
+        int first = plain[0] & 0xff;
+        return switch (plaintext) {
+            case HEADER -> first == ID_HEADER;
+            // range coder always starts with a zero byte
+            case LZMA -> first == 0;
+            // the first chunk resets the dictionary: uncompressed (1) or LZMA with new properties (>= 0xE0)
+            case LZMA2 -> first == 1 || (first >= 0xE0 && plain[6] == 0);
+            case BZIP2 -> plain[0] == 'B' && plain[1] == 'Z' && plain[2] == 'h';
+            // block type 3 is reserved
+            case DEFLATE -> ((first >> 1) & 3) != 3;
+        };
+    }
+
+    private byte[] deriveKey(String password) {
+        byte[] passwordBytes = password.getBytes(StandardCharsets.UTF_16LE);
+        if (numCyclesPower == 0x3F) {
+            byte[] key = new byte[32];
+            System.arraycopy(salt, 0, key, 0, Math.min(salt.length, 32));
+            System.arraycopy(passwordBytes, 0, key, Math.min(salt.length, 32),
+                    Math.min(passwordBytes.length, 32 - Math.min(salt.length, 32)));
+            return key;
+        }
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            byte[] round = new byte[salt.length + passwordBytes.length + 8];
+            System.arraycopy(salt, 0, round, 0, salt.length);
+            System.arraycopy(passwordBytes, 0, round, salt.length, passwordBytes.length);
+            int counter = salt.length + passwordBytes.length;
+            long rounds = 1L << numCyclesPower;
+            for (long i = 0; i < rounds; i++) {
+                sha.update(round);
+                // increment the little endian round counter
+                for (int b = counter; b < round.length && ++round[b] == 0; b++) {
+                    // carry
+                }
+            }
+            return sha.digest();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void skipArchiveProperties(HeaderReader header) {
+        while (header.byte8() != ID_END) {
+            header.position += (int) header.number();
+        }
+    }
+
+    private static class StreamsInfo {
+        long packPos;
+        long[] packSizes = new long[0];
+        List<Folder> folders = new ArrayList<>();
+
+        static StreamsInfo read(HeaderReader header) {
+            StreamsInfo streams = new StreamsInfo();
+            int id = header.byte8();
+            if (id == ID_PACK_INFO) {
+                streams.packPos = header.number();
+                int numPackStreams = (int) header.number();
+                streams.packSizes = new long[numPackStreams];
+                id = header.byte8();
+                if (id == ID_SIZE) {
+                    for (int i = 0; i < numPackStreams; i++) {
+                        streams.packSizes[i] = header.number();
+                    }
+                    id = header.byte8();
+                }
+                if (id == ID_CRC) {
+                    header.skipDigests(numPackStreams);
+                    id = header.byte8();
+                }
+                id = header.byte8(); // after ID_END
+            }
+            if (id == ID_UNPACK_INFO && header.byte8() == ID_FOLDER) {
+                int numFolders = (int) header.number();
+                if (header.byte8() != 0) {
+                    // folders stored in an additional stream
+                    return streams;
+                }
+                for (int i = 0; i < numFolders; i++) {
+                    streams.folders.add(Folder.read(header));
+                }
+            }
+            return streams;
+        }
+    }
+
+    private static class Folder {
+        byte[][] coderIds;
+        byte[][] properties;
+        int[] inStreams;
+        int[] outStreams;
+        long[][] bindPairs;
+        long[] packedStreams;
+
+        static Folder read(HeaderReader header) {
+            Folder folder = new Folder();
+            int numCoders = (int) header.number();
+            folder.coderIds = new byte[numCoders][];
+            folder.properties = new byte[numCoders][];
+            folder.inStreams = new int[numCoders];
+            folder.outStreams = new int[numCoders];
+            int totalIn = 0;
+            int totalOut = 0;
+            for (int i = 0; i < numCoders; i++) {
+                int flags = header.byte8();
+                folder.coderIds[i] = header.bytes(flags & 0x0F);
+                if ((flags & 0x10) != 0) {
+                    folder.inStreams[i] = (int) header.number();
+                    folder.outStreams[i] = (int) header.number();
+                } else {
+                    folder.inStreams[i] = 1;
+                    folder.outStreams[i] = 1;
+                }
+                folder.properties[i] = (flags & 0x20) != 0 ? header.bytes((int) header.number()) : new byte[0];
+                totalIn += folder.inStreams[i];
+                totalOut += folder.outStreams[i];
+            }
+            folder.bindPairs = new long[totalOut - 1][];
+            for (int i = 0; i < folder.bindPairs.length; i++) {
+                folder.bindPairs[i] = new long[]{header.number(), header.number()};
+            }
+            int numPackedStreams = totalIn - folder.bindPairs.length;
+            folder.packedStreams = new long[numPackedStreams];
+            if (numPackedStreams == 1) {
+                for (int in = 0; in < totalIn; in++) {
+                    int stream = in;
+                    if (Arrays.stream(folder.bindPairs).noneMatch(pair -> pair[0] == stream)) {
+                        folder.packedStreams[0] = in;
+                        break;
+                    }
+                }
+            } else {
+                for (int i = 0; i < numPackedStreams; i++) {
+                    folder.packedStreams[i] = header.number();
+                }
+            }
+            return folder;
+        }
+
+        int indexOf(byte[] coderId) {
+            for (int i = 0; i < coderIds.length; i++) {
+                if (Arrays.equals(coderIds[i], coderId)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        int firstInStream(int coder) {
+            return Arrays.stream(inStreams, 0, coder).sum();
+        }
+
+        int firstOutStream(int coder) {
+            return Arrays.stream(outStreams, 0, coder).sum();
+        }
+
+        int coderOfInStream(int inStream) {
+            int first = 0;
+            for (int i = 0; i < inStreams.length; i++) {
+                first += inStreams[i];
+                if (inStream < first) {
+                    return i;
+                }
+            }
+            throw new ArrayIndexOutOfBoundsException(inStream);
+        }
+    }
+
+    private static class HeaderReader {
+        private final byte[] header;
+        private int position;
+
+        HeaderReader(byte[] header) {
+            this.header = header;
+        }
+
+        int byte8() {
+            return header[position++] & 0xff;
+        }
+
+        long uint64() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value |= (long) byte8() << (8 * i);
+            }
+            return value;
+        }
+
+        /**
+         * 7z variable length number, the leading one bits of the first byte tell how many bytes follow
+         */
+        long number() {
+            int first = byte8();
+            int mask = 0x80;
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                if ((first & mask) == 0) {
+                    long high = first & (mask - 1);
+                    return value | (high << (8 * i));
+                }
+                value |= (long) byte8() << (8 * i);
+                mask >>>= 1;
+            }
+            return value;
+        }
+
+        byte[] bytes(int count) {
+            if (position + count > header.length) {
+                throw new ArrayIndexOutOfBoundsException(position + count);
+            }
+            byte[] bytes = Arrays.copyOfRange(header, position, position + count);
+            position += count;
+            return bytes;
+        }
+
+        void skipDigests(int count) {
+            int defined = count;
+            if (byte8() == 0) {
+                byte[] bits = bytes((count + 7) / 8);
+                defined = 0;
+                for (int i = 0; i < count; i++) {
+                    if ((bits[i / 8] & (0x80 >> (i % 8))) != 0) {
+                        defined++;
+                    }
+                }
+            }
+            position += 4 * defined;
+        }
+    }
+
+    /**
+     * All volumes of a split archive as one continuous range of bytes
+     */
+    private static class Volumes implements Closeable {
+        private final List<RandomAccessFile> files = new ArrayList<>();
+        private final List<Long> starts = new ArrayList<>();
+        private long length;
+
+        static Volumes open(File archive) throws IOException {
+            Volumes volumes = new Volumes();
+            volumes.add(archive);
+            for (File volume = VolumeSets.following(archive); volume != null && volume.exists();
+                 volume = VolumeSets.following(volume)) {
+                volumes.add(volume);
+            }
+            return volumes;
+        }
+
+        private void add(File volume) throws IOException {
+            RandomAccessFile file = new RandomAccessFile(volume, "r");
+            files.add(file);
+            starts.add(length);
+            length += file.length();
+        }
+
+        byte[] read(long position, int count) throws IOException {
+            if (position < 0 || position + count > length) {
+                throw new EOFException("Beyond the end of the archive");
+            }
+            byte[] data = new byte[count];
+            int done = 0;
+            while (done < count) {
+                int volume = starts.size() - 1;
+                while (starts.get(volume) > position + done) {
+                    volume--;
+                }
+                RandomAccessFile file = files.get(volume);
+                long offset = position + done - starts.get(volume);
+                int chunk = (int) Math.min(count - done, file.length() - offset);
+                file.seek(offset);
+                file.readFully(data, done, chunk);
+                done += chunk;
+            }
+            return data;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (RandomAccessFile file : files) {
+                file.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.underground.extractor.handler.verifier;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipExtraField;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.archivers.zip.ZipShort;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Collections;
+
+/**
+ * Rejects wrong passwords of a ZIP archive without decompressing anything, using the check value stored
+ * in front of the data of the smallest encrypted entry:
+ * <ul>
+ * <li>ZipCrypto - the last of the 12 encryption header bytes has to match the CRC (or modification time),
+ * so about 255 of 256 wrong passwords are rejected after a few hundred table lookups.</li>
+ * <li>WinZip AES - the 2 byte password verification value derived by PBKDF2-HMAC-SHA1 (1000 rounds),
+ * rejecting all but 1 of 65536 wrong passwords.</li>
+ * </ul>
+ * Non ASCII passwords are always let through, since the code page used by the archiver is unknown.
+ */
+public class ZipPasswordVerifier implements PasswordVerifier {
+
+    private static final int METHOD_AES = 99;
+    private static final ZipShort AES_EXTRA_FIELD = new ZipShort(0x9901);
+    private static final int ZIP_CRYPTO_HEADER_LENGTH = 12;
+    private static final int AES_ITERATIONS = 1000;
+    private static final int[] CRC_TABLE = new int[256];
+
+    static {
+        for (int n = 0; n < 256; n++) {
+            int c = n;
+            for (int k = 0; k < 8; k++) {
+                c = (c & 1) != 0 ? 0xEDB88320 ^ (c >>> 1) : c >>> 1;
+            }
+            CRC_TABLE[n] = c;
+        }
+    }
+
+    private final byte[] encryptionHeader;
+    private final int checkByte;
+    private final byte[] aesSalt;
+    private final int aesKeyLength;
+    private final int aesVerifier;
+
+    private ZipPasswordVerifier(byte[] encryptionHeader, int checkByte) {
+        this.encryptionHeader = encryptionHeader;
+        this.checkByte = checkByte;
+        this.aesSalt = null;
+        this.aesKeyLength = 0;
+        this.aesVerifier = 0;
+    }
+
+    private ZipPasswordVerifier(byte[] aesSalt, int aesKeyLength, int aesVerifier) {
+        this.encryptionHeader = null;
+        this.checkByte = 0;
+        this.aesSalt = aesSalt;
+        this.aesKeyLength = aesKeyLength;
+        this.aesVerifier = aesVerifier;
+    }
+
+    /**
+     * Reads the check data of the smallest encrypted entry.
+     *
+     * @return {@link PasswordVerifier#ACCEPT_ALL} if no entry is encrypted or the encryption is not supported
+     */
+    public static PasswordVerifier of(File archive) throws IOException {
+        try (ZipFile zipFile = new ZipFile(archive)) {
+            ZipArchiveEntry smallest = null;
+            for (ZipArchiveEntry entry : Collections.list(zipFile.getEntries())) {
+                if (!entry.isDirectory() && entry.getGeneralPurposeBit().usesEncryption()
+                        && !entry.getGeneralPurposeBit().usesStrongEncryption()
+                        && (smallest == null || entry.getCompressedSize() < smallest.getCompressedSize())) {
+                    smallest = entry;
+                }
+            }
+            if (smallest == null) {
+                return ACCEPT_ALL;
+            }
+            if (smallest.getMethod() == METHOD_AES) {
+                return ofAes(zipFile, smallest);
+            }
+            return ofZipCrypto(archive, zipFile, smallest);
+        }
+    }
+
+    private static PasswordVerifier ofAes(ZipFile zipFile, ZipArchiveEntry entry) throws IOException {
+        ZipExtraField aesField = entry.getExtraField(AES_EXTRA_FIELD);
+        if (aesField == null) {
+            return ACCEPT_ALL;
+        }
+        byte[] data = aesField.getCentralDirectoryData();
+        if (data.length < 5 || data[4] < 1 || data[4] > 3) {
+            return ACCEPT_ALL;
+        }
+        // strength 1, 2, 3 = AES-128, 192, 256
+        int keyLength = 8 + 8 * data[4];
+        byte[] salt = new byte[keyLength / 2];
+        int verifier;
+        try (DataInputStream in = new DataInputStream(zipFile.getRawInputStream(entry))) {
+            in.readFully(salt);
+            verifier = in.readUnsignedShort();
+        }
+        return new ZipPasswordVerifier(salt, keyLength, verifier);
+    }
+
+    private static PasswordVerifier ofZipCrypto(File archive, ZipFile zipFile, ZipArchiveEntry entry) throws IOException {
+        byte[] header = new byte[ZIP_CRYPTO_HEADER_LENGTH];
+        try (InputStream in = zipFile.getRawInputStream(entry)) {
+            new DataInputStream(in).readFully(header);
+        }
+        int checkByte;
+        if (entry.getGeneralPurposeBit().usesDataDescriptor()) {
+            // CRC was not known while writing, the high byte of the DOS modification time is used instead
+            Integer dosTime = readDosTime(archive, entry);
+            if (dosTime == null) {
+                return ACCEPT_ALL;
+            }
+            checkByte = (dosTime >>> 8) & 0xff;
+        } else {
+            checkByte = (int) ((entry.getCrc() >>> 24) & 0xff);
+        }
+        return new ZipPasswordVerifier(header, checkByte);
+    }
+
+    private static Integer readDosTime(File archive, ZipArchiveEntry entry) throws IOException {
+        long localHeaderOffset = entry.getDataOffset() - 30 - entry.getRawName().length
+                - entry.getLocalFileDataExtra().length;
+        if (localHeaderOffset < 0) {
+            return null;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(archive, "r")) {
+            file.seek(localHeaderOffset);
+            byte[] localHeader = new byte[12];
+            file.readFully(localHeader);
+            if (localHeader[0] != 'P' || localHeader[1] != 'K' || localHeader[2] != 3 || localHeader[3] != 4) {
+                return null;
+            }
+            return (localHeader[10] & 0xff) | (localHeader[11] & 0xff) << 8;
+        }
+    }
+
+    @Override
+    public boolean mayMatch(String password) {
+        if (password.isEmpty() || !StandardCharsets.US_ASCII.newEncoder().canEncode(password)) {
+            return true;
+        }
+        return encryptionHeader != null ? mayMatchZipCrypto(password) : mayMatchAes(password);
+    }
+
+    private boolean mayMatchZipCrypto(String password) {
+        int key0 = 0x12345678;
+        int key1 = 0x23456789;
+        int key2 = 0x34567890;
+        for (int i = 0; i < password.length(); i++) {
+            key0 = crc32(key0, password.charAt(i));
+            key1 = (key1 + (key0 & 0xff)) * 134775813 + 1;
+            key2 = crc32(key2, key1 >>> 24);
+        }
+        int plain = 0;
+        for (byte encrypted : encryptionHeader) {
+            int temp = (key2 | 2) & 0xffff;
+            plain = (encrypted ^ (temp * (temp ^ 1)) >>> 8) & 0xff;
+            key0 = crc32(key0, plain);
+            key1 = (key1 + (key0 & 0xff)) * 134775813 + 1;
+            key2 = crc32(key2, key1 >>> 24);
+        }
+        return plain == checkByte;
+    }
+
+    private boolean mayMatchAes(String password) {
+        try {
+            SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
+            PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), aesSalt, AES_ITERATIONS, (2 * aesKeyLength + 2) * 8);
+            byte[] derived = factory.generateSecret(spec).getEncoded();
+            int verifier = (derived[2 * aesKeyLength] & 0xff) << 8 | (derived[2 * aesKeyLength + 1] & 0xff);
+            return verifier == aesVerifier;
+        } catch (GeneralSecurityException e) {
+            return true;
+        }
+    }
+
+    private static int crc32(int crc, int b) {
+        return CRC_TABLE[(crc ^ b) & 0xff] ^ (crc >>> 8);
+    }
+}
@@ -0,0 +1,82 @@
+package com.underground.extractor.password;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The candidates of several sources one after the other, a wordlist before a mask for example.
+ */
+public final class ChainedSource implements PasswordSource {
+
+    private final List<PasswordSource> sources;
+
+    public ChainedSource(List<PasswordSource> sources) {
+        this.sources = sources;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Concat(List.copyOf(sources));
+    }
+
+    /**
+     * Part {@code i} chains the parts {@code i} of all sources.
+     */
+    @Override
+    public List<Iterable<String>> split(int parts) {
+        List<List<Iterable<String>>> splits = sources.stream().map(source -> source.split(parts)).toList();
+        List<Iterable<String>> split = new ArrayList<>();
+        for (int part = 0; part < parts; part++) {
+            List<Iterable<String>> chained = new ArrayList<>();
+            for (List<Iterable<String>> sourceSplit : splits) {
+                chained.add(sourceSplit.get(part));
+            }
+            split.add(() -> new Concat(chained));
+        }
+        return split;
+    }
+
+    @Override
+    public PasswordSource forArchive(String archive) {
+        return new ChainedSource(sources.stream().map(source -> source.forArchive(archive)).toList());
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (PasswordSource source : sources) {
+            source.close();
+        }
+    }
+
+    /**
+     * Iterates the iterables one after the other, each one is only started when the previous one is exhausted
+     */
+    private static class Concat implements Iterator<String> {
+        private final Iterator<? extends Iterable<String>> iterables;
+        private Iterator<String> current = Collections.emptyIterator();
+
+        Concat(List<? extends Iterable<String>> iterables) {
+            this.iterables = iterables.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && iterables.hasNext()) {
+                current = iterables.next().iterator();
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.underground.extractor.password;
+
+import java.util.Iterator;
+
+/**
+ * Candidates addressed by a position, so that ranges of them can be handed out to other processes without
+ * enumerating what comes before. A position is the index of a mask candidate or the byte offset of a wordlist line.
+ */
+public interface Keyspace {
+
+    /**
+     * Positions run from {@code 0} to the size
+     */
+    long size();
+
+    /**
+     * Iterates the candidates from the first one at or after the position on.
+     */
+    Cursor cursor(long position);
+
+    interface Cursor extends Iterator<String> {
+
+        /**
+         * Position of the candidate {@link #next()} returns, the size of the keyspace if there is none left
+         */
+        long position();
+    }
+}
@@ -0,0 +1,238 @@
+package com.underground.extractor.password;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Wordlist with one candidate a line, read through memory mapped windows as the candidates are needed,
+ * so even a wordlist of several GB never ends up on the heap. Duplicates are dropped by their hash, see
+ * {@link SeenHashes}. The file is split into chunks of about {@value #DEFAULT_CHUNK} bytes, each starting at a line,
+ * and part {@code i} of {@code n} reads the chunks {@code i, i + n, i + 2n, ...}, so the parts together still
+ * roughly follow the order of the wordlist.
+ */
+public final class MappedWordlist implements PasswordSource, Keyspace, Closeable {
+
+    /**
+     * Default number of candidates remembered to drop duplicates. Every iteration remembers its own, in a table of
+     * 16 bytes an entry, so 64 MB with the default, and half as much again while the table grows.
+     */
+    public static final long DEFAULT_DEDUP_ENTRIES = 4L * 1024 * 1024;
+    private static final int DEFAULT_WINDOW = 64 * 1024 * 1024;
+    private static final int DEFAULT_CHUNK = 64 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final int windowSize;
+    private final int chunkSize;
+    private final long dedupEntries;
+
+    MappedWordlist(Path file, int windowSize, int chunkSize, long dedupEntries) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.windowSize = windowSize;
+        this.chunkSize = chunkSize;
+        this.dedupEntries = dedupEntries;
+    }
+
+    public static MappedWordlist open(Path file) throws IOException {
+        return open(file, DEFAULT_DEDUP_ENTRIES);
+    }
+
+    /**
+     * @param dedupEntries most candidates remembered by an iteration to drop duplicates, {@code 0} keeps them
+     */
+    public static MappedWordlist open(Path file, long dedupEntries) throws IOException {
+        return new MappedWordlist(file, DEFAULT_WINDOW, DEFAULT_CHUNK, dedupEntries);
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Lines(0, 1, new SeenHashes(dedupEntries));
+    }
+
+    @Override
+    public List<Iterable<String>> split(int parts) {
+        SeenHashes seen = new SeenHashes(dedupEntries);
+        List<Iterable<String>> split = new ArrayList<>();
+        for (int part = 0; part < parts; part++) {
+            int first = part;
+            split.add(() -> new Lines(first, parts, seen));
+        }
+        return split;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Reads the lines starting at or after the byte offset, duplicates are only dropped within the cursor.
+     */
+    @Override
+    public Cursor cursor(long position) {
+        return new Lines(position, new SeenHashes(dedupEntries));
+    }
+
+    /**
+     * Returns the position itself if a line starts there, else the start of the next line.
+     */
+    private long lineStartFrom(long position) {
+        if (position <= 0 || position >= size) {
+            return Math.max(0, Math.min(position, size));
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            long from = position - 1;
+            while (from < size) {
+                buffer.clear();
+                int read = channel.read(buffer, from);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (buffer.get(i) == '\n') {
+                        return from + i + 1;
+                    }
+                }
+                from += read;
+            }
+            return size;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read the wordlist", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Candidates of the lines starting within the chunks {@code first, first + step, ...}, a line may run past
+     * the end of its chunk
+     */
+    private class Lines implements Cursor {
+        private final int step;
+        private final SeenHashes seen;
+        private long chunk;
+        private long position;
+        private long end;
+        private MappedByteBuffer window;
+        private long windowStart;
+        private byte[] line = new byte[256];
+        private String next;
+        private long nextPosition;
+
+        Lines(int first, int step, SeenHashes seen) {
+            this.step = step;
+            this.seen = seen;
+            this.chunk = first;
+            // a single part reads the whole file in one go
+            this.position = step == 1 ? 0 : lineStartFrom(chunk * chunkSize);
+            this.end = step == 1 ? size : lineStartFrom((chunk + 1) * chunkSize);
+        }
+
+        /**
+         * All lines from the one starting at or after the position on
+         */
+        Lines(long position, SeenHashes seen) {
+            this.step = 1;
+            this.seen = seen;
+            this.position = lineStartFrom(position);
+            this.end = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && position < size) {
+                if (position >= end) {
+                    chunk += step;
+                    position = Math.max(position, lineStartFrom(chunk * chunkSize));
+                    end = lineStartFrom((chunk + 1) * chunkSize);
+                    continue;
+                }
+                long start = position;
+                int length = readLine();
+                if (seen.add(SeenHashes.hash(line, 0, length))) {
+                    next = new String(line, 0, length, StandardCharsets.UTF_8);
+                    nextPosition = start;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String candidate = next;
+            next = null;
+            return candidate;
+        }
+
+        @Override
+        public long position() {
+            return hasNext() ? nextPosition : size;
+        }
+
+        /**
+         * Copies the line at the position into {@link #line} and moves past it.
+         *
+         * @return length of the line without its line break
+         */
+        private int readLine() {
+            if (window == null || position >= windowStart + window.limit()) {
+                map(position);
+            }
+            int from = (int) (position - windowStart);
+            int newline = indexOfNewline(from);
+            if (newline < 0 && windowStart < position && windowStart + window.limit() < size) {
+                // the line goes on in the next window
+                map(position);
+                from = 0;
+                newline = indexOfNewline(from);
+            }
+            int to = newline >= 0 ? newline : window.limit();
+            position = windowStart + to + (newline >= 0 ? 1 : 0);
+            if (to > from && window.get(to - 1) == '\r') {
+                to--;
+            }
+            int length = to - from;
+            if (line.length < length) {
+                line = new byte[Math.max(length, line.length * 2)];
+            }
+            window.get(from, line, 0, length);
+            return length;
+        }
+
+        private int indexOfNewline(int from) {
+            for (int i = from; i < window.limit(); i++) {
+                if (window.get(i) == '\n') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void map(long start) {
+            try {
+                window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, size - start));
+                windowStart = start;
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not map the wordlist", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.underground.extractor.password;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Enumerates the candidates of a hashcat style mask such as {@code ?u?l?l?d?d?d?d}. Every candidate has an index
+ * in the keyspace and is computed from it directly, so nothing is materialized and any range of the keyspace can
+ * be handed to a thread or another process. The last position changes fastest.
+ * <p>
+ * {@code ?l} is a-z, {@code ?u} A-Z, {@code ?d} 0-9, {@code ?s} the printable symbols and space, {@code ?a} all of
+ * them and {@code ??} a literal {@code ?}. Any other character stands for itself.
+ */
+public final class MaskSource implements PasswordSource, Keyspace {
+
+    static final String LOWER = "abcdefghijklmnopqrstuvwxyz";
+    static final String UPPER = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    static final String DIGITS = "0123456789";
+    static final String SYMBOLS = " !\"#$%&'()*+,-./:;<=>?@[\\]^_`{|}~";
+
+    /**
+     * After how many candidates the position all iterations are past is logged, to resume from after an interruption
+     */
+    private static final long PROGRESS_INTERVAL = 10_000_000;
+
+    private static final Logger logger = LoggerFactory.getLogger(MaskSource.class);
+
+    private final String mask;
+    private final char[][] charsets;
+    private final long keyspace;
+    private final long from;
+    private final long to;
+    /**
+     * Named in the progress logged, {@code null} if not known
+     */
+    private final String archive;
+
+    /**
+     * @param from index of the first candidate, to resume an interrupted search
+     * @param count number of candidates from there on, {@code -1} for the rest of the keyspace
+     * @throws IllegalArgumentException if the mask is invalid or its keyspace exceeds a {@code long}
+     */
+    public MaskSource(String mask, long from, long count) {
+        this.mask = mask;
+        this.charsets = parse(mask);
+        long size = 1;
+        for (char[] charset : charsets) {
+            try {
+                size = Math.multiplyExact(size, charset.length);
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("Keyspace of mask " + mask + " is too large");
+            }
+        }
+        this.keyspace = size;
+        if (from < 0 || from > keyspace) {
+            throw new IllegalArgumentException("Offset " + from + " is outside the keyspace of " + keyspace);
+        }
+        this.from = from;
+        this.to = count < 0 ? keyspace : Math.min(keyspace, from + count);
+        this.archive = null;
+    }
+
+    private MaskSource(MaskSource source, String archive) {
+        this.mask = source.mask;
+        this.charsets = source.charsets;
+        this.keyspace = source.keyspace;
+        this.from = source.from;
+        this.to = source.to;
+        this.archive = archive;
+    }
+
+    public MaskSource(String mask) {
+        this(mask, 0, -1);
+    }
+
+    private static char[][] parse(String mask) {
+        List<char[]> charsets = new ArrayList<>();
+        for (int i = 0; i < mask.length(); i++) {
+            char c = mask.charAt(i);
+            if (c != '?') {
+                charsets.add(new char[]{c});
+                continue;
+            }
+            if (++i == mask.length()) {
+                throw new IllegalArgumentException("Mask ends with a single '?': " + mask);
+            }
+            String charset = switch (mask.charAt(i)) {
+                case 'l' -> LOWER;
+                case 'u' -> UPPER;
+                case 'd' -> DIGITS;
+                case 's' -> SYMBOLS;
+                case 'a' -> LOWER + UPPER + DIGITS + SYMBOLS;
+                case '?' -> "?";
+                default -> throw new IllegalArgumentException("Unknown charset '?" + mask.charAt(i) + "' in mask " + mask);
+            };
+            charsets.add(charset.toCharArray());
+        }
+        return charsets.toArray(new char[0][]);
+    }
+
+    /**
+     * With several archives searched at once, each one logs its own position to resume from.
+     */
+    @Override
+    public MaskSource forArchive(String archive) {
+        return new MaskSource(this, archive);
+    }
+
+    public long keyspace() {
+        return keyspace;
+    }
+
+    @Override
+    public long size() {
+        return keyspace;
+    }
+
+    @Override
+    public Cursor cursor(long position) {
+        long start = Math.max(0, Math.min(position, keyspace));
+        return new Candidates(start, keyspace, new Progress(new long[]{start}), 0);
+    }
+
+    /**
+     * Computes the candidate with the index directly.
+     */
+    public String candidate(long index) {
+        char[] candidate = new char[charsets.length];
+        long rest = index;
+        for (int position = charsets.length - 1; position >= 0; position--) {
+            char[] charset = charsets[position];
+            candidate[position] = charset[(int) (rest % charset.length)];
+            rest /= charset.length;
+        }
+        return new String(candidate);
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Candidates(from, to, new Progress(new long[]{from}), 0);
+    }
+
+    /**
+     * Splits the range into parts of the same size, a part of index range can be computed without the others.
+     * The progress logged is the lowest position of all parts, so resuming from it skips nothing.
+     */
+    @Override
+    public List<Iterable<String>> split(int parts) {
+        long length = to - from;
+        long[] starts = new long[parts];
+        long[] ends = new long[parts];
+        for (int part = 0; part < parts; part++) {
+            starts[part] = from + length / parts * part + Math.min(part, length % parts);
+            ends[part] = starts[part] + length / parts + (part < length % parts ? 1 : 0);
+        }
+        Progress progress = new Progress(starts);
+        List<Iterable<String>> split = new ArrayList<>();
+        for (int part = 0; part < parts; part++) {
+            int index = part;
+            split.add(() -> new Candidates(starts[index], ends[index], progress, index));
+        }
+        return split;
+    }
+
+    /**
+     * Where the iterations over the parts of a range are. Each part is iterated by a single thread, which only
+     * asks for the next candidate once it is done with the one before.
+     */
+    private class Progress {
+        private final AtomicLongArray positions;
+        private final AtomicLong handedOut = new AtomicLong();
+
+        Progress(long[] starts) {
+            this.positions = new AtomicLongArray(starts);
+        }
+
+        void reached(int part, long index) {
+            positions.set(part, index);
+            if (handedOut.incrementAndGet() % PROGRESS_INTERVAL == 0) {
+                long lowest = Long.MAX_VALUE;
+                for (int i = 0; i < positions.length(); i++) {
+                    lowest = Math.min(lowest, positions.get(i));
+                }
+                if (archive == null) {
+                    logger.info("Mask {} tried every candidate below {} of {}", mask, lowest, keyspace);
+                } else {
+                    logger.info("Mask {} tried every candidate below {} of {} on {}", mask, lowest, keyspace, archive);
+                }
+            }
+        }
+    }
+
+    private class Candidates implements Cursor {
+        private final long end;
+        private final Progress progress;
+        private final int part;
+        private long index;
+
+        Candidates(long start, long end, Progress progress, int part) {
+            this.index = start;
+            this.end = end;
+            this.progress = progress;
+            this.part = part;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < end;
+        }
+
+        @Override
+        public long position() {
+            return index;
+        }
+
+        @Override
+        public String next() {
+            if (index >= end) {
+                throw new NoSuchElementException();
+            }
+            progress.reached(part, index);
+            return candidate(index++);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.underground.extractor.password;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Candidates to try, produced one at a time instead of being held in a list. Every iteration starts over and
+ * hands out each distinct candidate once.
+ */
+public interface PasswordSource extends Iterable<String>, Closeable {
+
+    /**
+     * Splits the candidates into parts to be iterated in parallel, each part once. Together the parts hand out
+     * every distinct candidate exactly once.
+     */
+    List<Iterable<String>> split(int parts);
+
+    /**
+     * The candidates tried on one archive, which is named in what is logged about them. Closing the source stays
+     * with the caller of this.
+     */
+    default PasswordSource forArchive(String archive) {
+        return this;
+    }
+
+    @Override
+    default void close() throws IOException {
+    }
+
+    /**
+     * Candidates already in memory, split round robin
+     */
+    static PasswordSource of(List<String> passwords) {
+        return new PasswordSource() {
+            @Override
+            public Iterator<String> iterator() {
+                return passwords.stream().distinct().iterator();
+            }
+
+            @Override
+            public List<Iterable<String>> split(int parts) {
+                List<String> distinct = passwords.stream().distinct().toList();
+                List<Iterable<String>> split = new ArrayList<>();
+                for (int part = 0; part < parts; part++) {
+                    int first = part;
+                    split.add(() -> IntStream.iterate(first, i -> i < distinct.size(), i -> i + parts)
+                            .mapToObj(distinct::get).iterator());
+                }
+                return split;
+            }
+        };
+    }
+}
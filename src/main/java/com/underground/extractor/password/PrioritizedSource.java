@@ -0,0 +1,87 @@
+package com.underground.extractor.password;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The candidates most likely to fit first, then those of another source without the ones already tried.
+ * The other source is not closed, it is shared by the archives of a run.
+ */
+public final class PrioritizedSource implements PasswordSource {
+
+    private final Set<String> first;
+    private final PasswordSource rest;
+
+    public PrioritizedSource(List<String> first, PasswordSource rest) {
+        this.first = new LinkedHashSet<>(first);
+        this.rest = rest;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Prioritized(List.copyOf(first), rest);
+    }
+
+    /**
+     * Every part starts with its share of the prioritized candidates, round robin
+     */
+    @Override
+    public List<Iterable<String>> split(int parts) {
+        List<String> prioritized = List.copyOf(first);
+        List<Iterable<String>> restParts = rest.split(parts);
+        List<Iterable<String>> split = new ArrayList<>();
+        for (int part = 0; part < parts; part++) {
+            List<String> share = new ArrayList<>();
+            for (int i = part; i < prioritized.size(); i += parts) {
+                share.add(prioritized.get(i));
+            }
+            Iterable<String> restPart = restParts.get(part);
+            split.add(() -> new Prioritized(share, restPart));
+        }
+        return split;
+    }
+
+    private class Prioritized implements Iterator<String> {
+        private final Iterator<String> prioritized;
+        private final Iterator<String> others;
+        private String next;
+
+        Prioritized(List<String> prioritized, Iterable<String> others) {
+            this.prioritized = prioritized.iterator();
+            this.others = others.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) {
+                return true;
+            }
+            if (prioritized.hasNext()) {
+                next = prioritized.next();
+                return true;
+            }
+            while (others.hasNext()) {
+                String candidate = others.next();
+                if (!first.contains(candidate)) {
+                    next = candidate;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String candidate = next;
+            next = null;
+            return candidate;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.underground.extractor.password;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.UnaryOperator;
+
+/**
+ * A line of a hashcat style rule file, the functions are applied to the base word from left to right.
+ * Supported are {@code :} nothing, {@code l} lower case, {@code u} upper case, {@code c} capitalize,
+ * {@code C} lower the first and upper the rest, {@code t} toggle all, {@code TN} toggle at N, {@code r} reverse,
+ * {@code d} duplicate, {@code $X} append, {@code ^X} prepend, {@code sXY} replace X with Y, {@code [} and
+ * {@code ]} delete the first or last character and {@code 'N} truncate at N. Positions are {@code 0-9}
+ * and {@code A-Z} for 10 to 35.
+ */
+public final class Rule {
+
+    private final String source;
+    private final List<UnaryOperator<String>> functions;
+
+    private Rule(String source, List<UnaryOperator<String>> functions) {
+        this.source = source;
+        this.functions = functions;
+    }
+
+    public String apply(String word) {
+        String candidate = word;
+        for (UnaryOperator<String> function : functions) {
+            candidate = function.apply(candidate);
+        }
+        return candidate;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the rule uses an unknown function or misses an argument
+     */
+    public static Rule parse(String line) {
+        List<UnaryOperator<String>> functions = new ArrayList<>();
+        int i = 0;
+        while (i < line.length()) {
+            char function = line.charAt(i++);
+            switch (function) {
+                case ' ', ':' -> {
+                }
+                case 'l' -> functions.add(word -> word.toLowerCase(Locale.ROOT));
+                case 'u' -> functions.add(word -> word.toUpperCase(Locale.ROOT));
+                case 'c' -> functions.add(word -> word.isEmpty() ? word
+                        : word.substring(0, 1).toUpperCase(Locale.ROOT) + word.substring(1).toLowerCase(Locale.ROOT));
+                case 'C' -> functions.add(word -> word.isEmpty() ? word
+                        : word.substring(0, 1).toLowerCase(Locale.ROOT) + word.substring(1).toUpperCase(Locale.ROOT));
+                case 't' -> functions.add(word -> toggle(word, 0, word.length()));
+                case 'T' -> {
+                    int position = position(line, i++);
+                    functions.add(word -> position < word.length() ? toggle(word, position, position + 1) : word);
+                }
+                case 'r' -> functions.add(word -> new StringBuilder(word).reverse().toString());
+                case 'd' -> functions.add(word -> word + word);
+                case '$' -> {
+                    char appended = argument(line, i++);
+                    functions.add(word -> word + appended);
+                }
+                case '^' -> {
+                    char prepended = argument(line, i++);
+                    functions.add(word -> prepended + word);
+                }
+                case 's' -> {
+                    char replaced = argument(line, i++);
+                    char replacement = argument(line, i++);
+                    functions.add(word -> word.replace(replaced, replacement));
+                }
+                case '[' -> functions.add(word -> word.isEmpty() ? word : word.substring(1));
+                case ']' -> functions.add(word -> word.isEmpty() ? word : word.substring(0, word.length() - 1));
+                case '\'' -> {
+                    int length = position(line, i++);
+                    functions.add(word -> word.length() > length ? word.substring(0, length) : word);
+                }
+                default -> throw new IllegalArgumentException("Unknown rule function '" + function + "' in: " + line);
+            }
+        }
+        return new Rule(line, functions);
+    }
+
+    private static char argument(String line, int index) {
+        if (index >= line.length()) {
+            throw new IllegalArgumentException("Rule function misses its argument: " + line);
+        }
+        return line.charAt(index);
+    }
+
+    private static int position(String line, int index) {
+        char position = argument(line, index);
+        if (position >= '0' && position <= '9') {
+            return position - '0';
+        }
+        if (position >= 'A' && position <= 'Z') {
+            return position - 'A' + 10;
+        }
+        throw new IllegalArgumentException("Invalid position '" + position + "' in: " + line);
+    }
+
+    private static String toggle(String word, int from, int to) {
+        StringBuilder toggled = new StringBuilder(word);
+        for (int i = from; i < to; i++) {
+            char c = toggled.charAt(i);
+            toggled.setCharAt(i, Character.isUpperCase(c) ? Character.toLowerCase(c) : Character.toUpperCase(c));
+        }
+        return toggled.toString();
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
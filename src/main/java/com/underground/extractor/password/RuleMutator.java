@@ -0,0 +1,130 @@
+package com.underground.extractor.password;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Applies every rule to every base word as the candidates are needed, so the rules multiply the candidates
+ * without writing the expanded list anywhere. The candidates of a base word come together, in the order
+ * of the rules. A candidate produced again, by another rule or from another base word, is skipped.
+ */
+public final class RuleMutator implements PasswordSource {
+
+    /**
+     * Name of the rule set shipped with the application
+     */
+    public static final String BUILTIN = "builtin";
+    private static final String BUILTIN_RESOURCE = "/rules/default.rule";
+
+    private final PasswordSource baseWords;
+    private final List<Rule> rules;
+    private final long dedupEntries;
+
+    public RuleMutator(PasswordSource baseWords, List<Rule> rules) {
+        this(baseWords, rules, MappedWordlist.DEFAULT_DEDUP_ENTRIES);
+    }
+
+    /**
+     * @param dedupEntries most candidates remembered by an iteration to drop duplicates, as for
+     *                     {@link MappedWordlist#open(Path, long)}. The base words need no deduplication of their own then.
+     */
+    public RuleMutator(PasswordSource baseWords, List<Rule> rules, long dedupEntries) {
+        this.baseWords = baseWords;
+        this.rules = rules;
+        this.dedupEntries = dedupEntries;
+    }
+
+    /**
+     * Reads the rules from the file, or the ones shipped with the application for {@value #BUILTIN}.
+     * Empty lines and lines starting with {@code #} are skipped.
+     */
+    public static List<Rule> load(String rulesFile) throws IOException {
+        if (BUILTIN.equals(rulesFile)) {
+            try (InputStream builtin = RuleMutator.class.getResourceAsStream(BUILTIN_RESOURCE)) {
+                if (builtin == null) {
+                    throw new IOException("Missing " + BUILTIN_RESOURCE);
+                }
+                return parse(new BufferedReader(new InputStreamReader(builtin, StandardCharsets.UTF_8)).lines().toList());
+            }
+        }
+        return parse(Files.readAllLines(Path.of(rulesFile)));
+    }
+
+    static List<Rule> parse(List<String> lines) {
+        List<Rule> rules = new ArrayList<>();
+        for (String line : lines) {
+            if (!line.isBlank() && !line.startsWith("#")) {
+                rules.add(Rule.parse(line));
+            }
+        }
+        return rules;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Candidates(baseWords.iterator(), new SeenHashes(dedupEntries));
+    }
+
+    @Override
+    public List<Iterable<String>> split(int parts) {
+        SeenHashes seen = new SeenHashes(dedupEntries);
+        return baseWords.split(parts).stream()
+                .<Iterable<String>>map(part -> () -> new Candidates(part.iterator(), seen))
+                .toList();
+    }
+
+    @Override
+    public void close() throws IOException {
+        baseWords.close();
+    }
+
+    private class Candidates implements Iterator<String> {
+        private final Iterator<String> words;
+        private final SeenHashes seen;
+        private String word;
+        private int rule;
+        private String next;
+
+        Candidates(Iterator<String> words, SeenHashes seen) {
+            this.words = words;
+            this.seen = seen;
+            this.rule = rules.size();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                if (rule == rules.size()) {
+                    if (!words.hasNext()) {
+                        return false;
+                    }
+                    word = words.next();
+                    rule = 0;
+                    continue;
+                }
+                String candidate = rules.get(rule++).apply(word);
+                byte[] bytes = candidate.getBytes(StandardCharsets.UTF_8);
+                if (seen.add(SeenHashes.hash(bytes, 0, bytes.length))) {
+                    next = candidate;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String candidate = next;
+            next = null;
+            return candidate;
+        }
+    }
+}
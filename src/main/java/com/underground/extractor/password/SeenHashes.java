@@ -0,0 +1,79 @@
+package com.underground.extractor.password;
+
+/**
+ * Set of 64-bit hashes of the candidates handed out so far, open addressing over a plain {@code long[]},
+ * 8 bytes a candidate instead of a {@code String} each. Two different candidates sharing a hash are
+ * unlikely enough to be ignored. Once {@code maxEntries} are held, further candidates are no longer
+ * remembered and may come again.
+ */
+final class SeenHashes {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final long maxEntries;
+    private long[] table = new long[INITIAL_CAPACITY];
+    private long size;
+
+    /**
+     * The table stays at most half full, so it fits into the largest array
+     */
+    private static final long LIMIT = 1 << 29;
+
+    SeenHashes(long maxEntries) {
+        this.maxEntries = Math.min(maxEntries, LIMIT);
+    }
+
+    /**
+     * @return {@code false} if the hash was seen before
+     */
+    synchronized boolean add(long hash) {
+        // 0 marks a free slot
+        long key = hash == 0 ? 1 : hash;
+        int mask = table.length - 1;
+        for (int slot = (int) key & mask; ; slot = (slot + 1) & mask) {
+            if (table[slot] == key) {
+                return false;
+            }
+            if (table[slot] == 0) {
+                if (size >= maxEntries) {
+                    return true;
+                }
+                table[slot] = key;
+                if (++size * 2 > table.length) {
+                    grow();
+                }
+                return true;
+            }
+        }
+    }
+
+    private void grow() {
+        long[] old = table;
+        table = new long[old.length * 2];
+        int mask = table.length - 1;
+        for (long key : old) {
+            if (key != 0) {
+                int slot = (int) key & mask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = key;
+            }
+        }
+    }
+
+    /**
+     * FNV-1a over the bytes, mixed so that the low bits used for the slots are spread well.
+     */
+    static long hash(byte[] bytes, int offset, int length) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = offset; i < offset + length; i++) {
+            hash ^= bytes[i] & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
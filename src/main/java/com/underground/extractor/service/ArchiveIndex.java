@@ -0,0 +1,148 @@
+package com.underground.extractor.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers across runs which archives were extracted and with which password, by a fingerprint of their content
+ * rather than their name, so renamed or moved archives are recognized as well. The fingerprint covers the sizes of
+ * all volumes and the first and last {@value #BLOCK} bytes of the set.
+ * <p>
+ * The index is a file with a line per archive appended whenever an archive is done, the last line of a fingerprint
+ * wins. The file is compacted when the index is closed.
+ */
+class ArchiveIndex implements Closeable {
+
+    static final int BLOCK = 64 * 1024;
+
+    Logger logger = LoggerFactory.getLogger(ArchiveIndex.class);
+
+    private final Path file;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final Writer journal;
+    private int superseded;
+
+    /**
+     * @param password the password which fit, {@code null} if none did or none was needed
+     */
+    record Entry(ExtractionResult.Status status, String name, String password) {
+    }
+
+    private ArchiveIndex(Path file) throws IOException {
+        this.file = file;
+        if (Files.exists(file)) {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                String[] fields = line.split("\t", 4);
+                if (fields.length < 3) {
+                    continue;
+                }
+                try {
+                    put(fields[0], new Entry(ExtractionResult.Status.valueOf(fields[1]), fields[2],
+                            fields.length == 4 ? fields[3] : null));
+                } catch (IllegalArgumentException e) {
+                    logger.warn("Skipping malformed line in {}: {}", file, line);
+                }
+            }
+        }
+        this.journal = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * @param file {@code null} to not remember anything
+     * @return {@code null} if no file is given
+     */
+    static ArchiveIndex open(String file) throws IOException {
+        return file == null ? null : new ArchiveIndex(Path.of(file));
+    }
+
+    synchronized Entry get(String fingerprint) {
+        return entries.get(fingerprint);
+    }
+
+    /**
+     * Remembers the outcome, a password found before is kept if none was found this time.
+     */
+    synchronized void record(String fingerprint, ExtractionResult.Status status, String name, String password)
+            throws IOException {
+        Entry previous = entries.get(fingerprint);
+        if (password == null && previous != null) {
+            password = previous.password();
+        }
+        Entry entry = new Entry(status, name.replace('\t', ' '), password);
+        put(fingerprint, entry);
+        journal.write(line(fingerprint, entry));
+        journal.flush();
+    }
+
+    private void put(String fingerprint, Entry entry) {
+        if (entries.put(fingerprint, entry) != null) {
+            superseded++;
+        }
+    }
+
+    private static String line(String fingerprint, Entry entry) {
+        return fingerprint + "\t" + entry.status() + "\t" + entry.name()
+                + (entry.password() != null ? "\t" + entry.password() : "") + "\n";
+    }
+
+    /**
+     * Hashes the sizes of the volumes, the start of the first and the end of the last one.
+     */
+    static String fingerprint(List<File> volumes) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (File volume : volumes) {
+            digest.update((volume.length() + ";").getBytes(StandardCharsets.US_ASCII));
+        }
+        digest.update(block(volumes.get(0), true));
+        digest.update(block(volumes.get(volumes.size() - 1), false));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static byte[] block(File volume, boolean head) throws IOException {
+        try (var file = new RandomAccessFile(volume, "r")) {
+            byte[] block = new byte[(int) Math.min(BLOCK, file.length())];
+            file.seek(head ? 0 : file.length() - block.length);
+            file.readFully(block);
+            return block;
+        }
+    }
+
+    /**
+     * Rewrites the file with a line per archive if lines were superseded.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        journal.close();
+        if (superseded == 0) {
+            return;
+        }
+        List<String> lines = new ArrayList<>();
+        entries.forEach((fingerprint, entry) -> lines.add(line(fingerprint, entry)));
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        Files.writeString(temp, String.join("", lines), StandardCharsets.UTF_8);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,270 @@
+package com.underground.extractor.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Lets several hosts share an input directory, so every archive is processed by one of them only. A host claims
+ * an archive by creating its lease file in {@value #DIRECTORY}, which fails if the file exists already, and renews
+ * the lease by touching the file while it works on the archive. A lease not renewed within the expiry belongs to a
+ * host which crashed and is taken over. Once an archive is extracted, a done marker keeps the others from
+ * processing it again, as long as its first file stays the same. An archive no password opened is left to the
+ * others, which may have other passwords.
+ * <p>
+ * The expiry is compared with the modification time the shared file system reports, so it has to be well above
+ * the clock difference between the hosts.
+ */
+class ArchiveLeases implements Closeable {
+
+    static final String DIRECTORY = ".extractor-leases";
+    private static final String LEASE = ".lease";
+    private static final String DONE = ".done";
+    private static final int MAX_NAME = 160;
+
+    Logger logger = LoggerFactory.getLogger(ArchiveLeases.class);
+
+    private final Path root;
+    private final Path directory;
+    private final Duration expiry;
+    private final String node;
+    private final Set<Path> held = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService heartbeat;
+
+    ArchiveLeases(Path root, Duration expiry, String node) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.directory = Files.createDirectories(this.root.resolve(DIRECTORY));
+        this.expiry = expiry;
+        this.node = node;
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lease-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, expiry.toMillis() / 4);
+        heartbeat.scheduleAtFixedRate(this::renew, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    static ArchiveLeases open(Path root, Duration expiry) throws IOException {
+        return new ArchiveLeases(root, expiry, nodeName());
+    }
+
+    /**
+     * Whether the path is one of the lease files, which are no input
+     */
+    static boolean isLeaseFile(Path path) {
+        for (Path name : path) {
+            if (name.toString().equals(DIRECTORY)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return {@code true} if this host holds the lease now, {@code false} if another one works on the archive
+     * or processed it already
+     */
+    boolean claim(ExtractorService.Archive archive) throws IOException {
+        Path lease = file(archive, LEASE);
+        for (int attempt = 0; attempt < 2; attempt++) {
+            if (isDone(archive)) {
+                return false;
+            }
+            try {
+                Files.writeString(lease, node, StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            } catch (FileAlreadyExistsException e) {
+                if (!takeOver(lease)) {
+                    return false;
+                }
+                continue;
+            }
+            held.add(lease);
+            // another host may have finished it just before
+            if (isDone(archive)) {
+                release(archive);
+                return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Whether this host still holds the lease as of the last renewal, cheap enough to ask between two passwords.
+     */
+    boolean holds(ExtractorService.Archive archive) {
+        return held.contains(file(archive, LEASE));
+    }
+
+    /**
+     * Checks that the lease file still names this host and renews it, before anything is done which only the
+     * owner may do, like removing the archive.
+     *
+     * @return {@code false} if another host took the lease over
+     */
+    boolean confirm(ExtractorService.Archive archive) {
+        Path lease = file(archive, LEASE);
+        return held.contains(lease) && renew(lease);
+    }
+
+    /**
+     * Marks the archive as done and gives up its lease. Only for extracted archives, the others are released,
+     * so another host can try them with its passwords.
+     */
+    void complete(ExtractorService.Archive archive, ExtractionResult.Status status) throws IOException {
+        File first = archive.file();
+        Files.writeString(file(archive, DONE), node + "\t" + status + "\t" + first.length() + "\t" + first.lastModified(),
+                StandardCharsets.UTF_8);
+        release(archive);
+    }
+
+    /**
+     * Gives up the lease, another host may process the archive then.
+     */
+    void release(ExtractorService.Archive archive) throws IOException {
+        Path lease = file(archive, LEASE);
+        if (held.remove(lease) && owner(lease)) {
+            Files.deleteIfExists(lease);
+        }
+    }
+
+    private boolean isDone(ExtractorService.Archive archive) throws IOException {
+        Path done = file(archive, DONE);
+        if (!Files.exists(done)) {
+            return false;
+        }
+        String[] fields = Files.readString(done, StandardCharsets.UTF_8).split("\t");
+        File first = archive.file();
+        // the same name may be used again for another archive
+        return fields.length == 4 && fields[2].equals(String.valueOf(first.length()))
+                && fields[3].equals(String.valueOf(first.lastModified()));
+    }
+
+    private boolean expired(Path lease) throws IOException {
+        try {
+            return System.currentTimeMillis() - Files.getLastModifiedTime(lease).toMillis() > expiry.toMillis();
+        } catch (NoSuchFileException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Moves the expired lease aside first, only one of several hosts trying at once succeeds with that. The lease is
+     * read again just before, so one renewed since it was checked stays where it is. If it is renewed in the moment
+     * between, it is moved back in one step, its owner's heartbeat may miss it otherwise.
+     */
+    private boolean takeOver(Path lease) throws IOException {
+        if (!expired(lease)) {
+            return false;
+        }
+        Path stale = lease.resolveSibling(lease.getFileName() + "." + node.replaceAll("[^A-Za-z0-9.-]", "_") + ".stale");
+        try {
+            Files.move(lease, stale, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException e) {
+            return true;
+        }
+        if (!expired(stale)) {
+            // the live owner wins over a host which claimed the archive meanwhile
+            Files.move(stale, lease, StandardCopyOption.ATOMIC_MOVE);
+            return false;
+        }
+        String previous = Files.readString(stale, StandardCharsets.UTF_8);
+        Files.deleteIfExists(stale);
+        logger.warn("Taking over {} from {}, its lease expired", lease.getFileName(), previous);
+        return true;
+    }
+
+    private boolean owner(Path lease) {
+        try {
+            return Files.readString(lease, StandardCharsets.UTF_8).equals(node);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void renew() {
+        for (Path lease : held) {
+            renew(lease);
+        }
+    }
+
+    /**
+     * @return {@code false} if the lease was lost, it isn't held anymore then
+     */
+    private boolean renew(Path lease) {
+        if (!owner(lease)) {
+            logger.warn("Lost {} to another host", lease.getFileName());
+            held.remove(lease);
+            return false;
+        }
+        try {
+            Files.setLastModifiedTime(lease, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            logger.warn("Could not renew {}: {}", lease.getFileName(), e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * The lease files are named after the path of the archive within the input directory
+     */
+    private Path file(ExtractorService.Archive archive, String suffix) {
+        String relative = root.relativize(archive.file().toPath().toAbsolutePath().normalize()).toString();
+        CRC32 crc = new CRC32();
+        crc.update(relative.getBytes(StandardCharsets.UTF_8));
+        String name = relative.replaceAll("[^A-Za-z0-9._-]", "_");
+        if (name.length() > MAX_NAME) {
+            name = name.substring(name.length() - MAX_NAME);
+        }
+        return directory.resolve(name + "-" + Long.toHexString(crc.getValue()) + suffix);
+    }
+
+    private static String nodeName() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "unknown";
+        }
+        return host + "-" + ProcessHandle.current().pid();
+    }
+
+    /**
+     * Stops renewing and gives up the leases still held, so other hosts don't have to wait for them to expire.
+     */
+    @Override
+    public void close() {
+        heartbeat.shutdownNow();
+        for (Path lease : held) {
+            try {
+                if (owner(lease)) {
+                    Files.deleteIfExists(lease);
+                }
+            } catch (IOException e) {
+                logger.warn("Could not release {}: {}", lease.getFileName(), e.getMessage());
+            }
+        }
+        held.clear();
+    }
+}
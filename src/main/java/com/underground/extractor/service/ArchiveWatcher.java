@@ -0,0 +1,237 @@
+package com.underground.extractor.service;
+
+import com.underground.extractor.password.PasswordSource;
+import com.underground.extractor.volume.VolumeSets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches the input directory and extracts archives as they appear, instead of rescanning it on every run.
+ * The native library, the caches of the handler and the passwords stay loaded between archives.
+ * An archive is only taken once none of its files changed for the quiet period, and a multipart archive
+ * only once its set is complete. If that can't be told from the volumes, the set is taken after it stayed
+ * unchanged for {@value #UNKNOWN_COMPLETENESS_FACTOR} quiet periods. An archive which could not be extracted is tried
+ * again once the password file changed, or once the archive itself changed.
+ */
+@Service
+public class ArchiveWatcher {
+
+    static final int UNKNOWN_COMPLETENESS_FACTOR = 12;
+
+    private final ExtractorService extractorService;
+    Logger logger = LoggerFactory.getLogger(ArchiveWatcher.class);
+
+    public ArchiveWatcher(ExtractorService extractorService) {
+        this.extractorService = extractorService;
+    }
+
+    /**
+     * Blocks until the thread is interrupted.
+     */
+    public void watch(String inputDir, String outputDir, String passwordsFile, boolean removeAfterExtraction,
+                      ExtractionOptions options, Duration quietPeriod) throws IOException {
+        Path root = Paths.get(inputDir);
+        Set<Path> pending = new HashSet<>();
+        // archives done with and those to try again with other passwords, by their modification time when taken
+        Map<Path, FileTime> extracted = new HashMap<>();
+        Map<Path, FileTime> failed = new HashMap<>();
+
+        try (Passwords passwords = new Passwords(Paths.get(passwordsFile), options);
+             ArchiveLeases leases = extractorService.openLeases(root, options);
+             WatchService watchService = root.getFileSystem().newWatchService()) {
+            register(root, watchService, pending);
+            logger.info("Watching {} for archives", root);
+            while (!Thread.currentThread().isInterrupted()) {
+                if (passwords.reload() && !failed.isEmpty()) {
+                    logger.info("Trying {} archives again with the new passwords", failed.size());
+                    pending.addAll(failed.keySet());
+                    failed.clear();
+                }
+                List<ExtractorService.Archive> ready = takeReady(pending, extracted, failed, quietPeriod);
+                if (!ready.isEmpty()) {
+                    Map<Path, FileTime> taken = new HashMap<>();
+                    for (ExtractorService.Archive archive : ready) {
+                        Path path = archive.file().toPath();
+                        lastModified(path).ifPresent(time -> taken.put(path, time));
+                    }
+                    List<ExtractionResult> results = extractorService.extract(ready, passwords.get(), outputDir,
+                            removeAfterExtraction, options, leases);
+                    for (ExtractionResult result : results) {
+                        Path path = result.archive().toPath();
+                        FileTime time = taken.get(path);
+                        if (time == null || !Files.exists(path)) {
+                            continue;
+                        }
+                        boolean done = result.status() == ExtractionResult.Status.EXTRACTED
+                                || result.status() == ExtractionResult.Status.SKIPPED;
+                        (done ? extracted : failed).put(path, time);
+                    }
+                }
+
+                WatchKey key = watchService.poll(quietPeriod.toMillis(), TimeUnit.MILLISECONDS);
+                while (key != null) {
+                    Path directory = (Path) key.watchable();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == OVERFLOW) {
+                            extracted.keySet().removeIf(Files::notExists);
+                            failed.keySet().removeIf(Files::notExists);
+                            register(root, watchService, pending);
+                            continue;
+                        }
+                        Path path = directory.resolve((Path) event.context());
+                        if (ArchiveLeases.isLeaseFile(path)) {
+                            continue;
+                        }
+                        if (event.kind() == ENTRY_DELETE) {
+                            // a file or a whole directory of them
+                            extracted.keySet().removeIf(known -> known.startsWith(path));
+                            failed.keySet().removeIf(known -> known.startsWith(path));
+                            continue;
+                        }
+                        if (Files.isDirectory(path)) {
+                            register(path, watchService, pending);
+                        } else {
+                            pending.add(path);
+                        }
+                    }
+                    key.reset();
+                    key = watchService.poll();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("Stopped watching {}", root);
+    }
+
+    /**
+     * Watches the directory and all below it, the files already there become candidates.
+     */
+    private void register(Path directory, WatchService watchService, Set<Path> pending) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.filter(path -> !ArchiveLeases.isLeaseFile(path))::iterator) {
+                if (Files.isDirectory(path)) {
+                    path.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+                } else {
+                    pending.add(path);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes and returns the archives whose files all settled, indexing the directories of the changed files again.
+     */
+    private List<ExtractorService.Archive> takeReady(Set<Path> pending, Map<Path, FileTime> extracted,
+                                                     Map<Path, FileTime> failed, Duration quietPeriod) {
+        Set<Path> directories = new HashSet<>();
+        pending.forEach(path -> directories.add(path.getParent()));
+        pending.clear();
+
+        List<ExtractorService.Archive> ready = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (Path directory : directories) {
+            VolumeSets.Index index;
+            try {
+                index = ExtractorService.index(directory, 1);
+            } catch (IOException e) {
+                logger.warn("Could not index {}: {}", directory, e.getMessage());
+                continue;
+            }
+            List<ExtractorService.Archive> archives = new ArrayList<>();
+            List<VolumeSets.Completeness> completeness = new ArrayList<>();
+            index.singles().forEach(file -> {
+                archives.add(ExtractorService.Archive.single(file));
+                completeness.add(VolumeSets.Completeness.COMPLETE);
+            });
+            index.sets().forEach(set -> {
+                archives.add(ExtractorService.Archive.of(set));
+                completeness.add(set.completeness());
+            });
+
+            for (int i = 0; i < archives.size(); i++) {
+                ExtractorService.Archive archive = archives.get(i);
+                Path candidate = archive.file().toPath();
+                Optional<FileTime> modified = lastModified(candidate);
+                if (modified.isEmpty() || modified.get().equals(extracted.get(candidate))
+                        || modified.get().equals(failed.get(candidate))) {
+                    continue;
+                }
+                long unchangedFor = now - archive.volumes().stream().mapToLong(File::lastModified).max().orElse(now);
+                boolean settled = switch (completeness.get(i)) {
+                    case COMPLETE -> unchangedFor >= quietPeriod.toMillis();
+                    case UNKNOWN -> unchangedFor >= quietPeriod.toMillis() * UNKNOWN_COMPLETENESS_FACTOR;
+                    // wait for the missing volumes
+                    case INCOMPLETE -> false;
+                };
+                if (settled) {
+                    ready.add(archive);
+                } else {
+                    // look again after the next poll
+                    pending.add(candidate);
+                }
+            }
+        }
+        return ready;
+    }
+
+    private static Optional<FileTime> lastModified(Path path) {
+        try {
+            return Optional.of(Files.getLastModifiedTime(path));
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * The password list, read again only if the file changed
+     */
+    private class Passwords implements Closeable {
+        private final Path file;
+        private final ExtractionOptions options;
+        private FileTime readAt;
+        private PasswordSource passwords = PasswordSource.of(List.of());
+
+        Passwords(Path file, ExtractionOptions options) {
+            this.file = file;
+            this.options = options;
+        }
+
+        /**
+         * @return {@code true} if the file changed and was read again
+         */
+        boolean reload() throws IOException {
+            Optional<FileTime> modified = lastModified(file);
+            if (modified.isEmpty() || modified.get().equals(readAt)) {
+                return false;
+            }
+            passwords.close();
+            passwords = extractorService.readPasswords(file.toString(), options);
+            readAt = modified.get();
+            logger.info("Loaded passwords from {}", file);
+            return true;
+        }
+
+        PasswordSource get() {
+            return passwords;
+        }
+
+        @Override
+        public void close() throws IOException {
+            passwords.close();
+        }
+    }
+}
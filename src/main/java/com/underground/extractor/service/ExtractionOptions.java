@@ -0,0 +1,86 @@
+package com.underground.extractor.service;
+
+import com.underground.extractor.handler.EntryFilter;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Tuning knobs of a batch run, everything has a sensible default.
+ */
+@Getter
+@Builder
+public class ExtractionOptions {
+
+    /**
+     * Number of archives processed in parallel
+     */
+    @Builder.Default
+    private final int threads = 1;
+
+    /**
+     * Number of workers searching the password of a single archive
+     */
+    @Builder.Default
+    private final int searchThreads = 1;
+
+    /**
+     * How long to wait for missing or still growing volumes of a multipart archive, {@code 0} to not wait
+     */
+    @Builder.Default
+    private final int volumeWaitSeconds = 0;
+
+    /**
+     * Rule file applied to every password of the password file, {@code "builtin"} for the rules shipped
+     * with the application, {@code null} to try the passwords as they are
+     */
+    @Builder.Default
+    private final String rulesFile = null;
+
+    /**
+     * Charset mask such as {@code ?u?l?l?d?d?d?d} whose candidates are tried after the password file, {@code null} for none
+     */
+    @Builder.Default
+    private final String mask = null;
+
+    /**
+     * Index in the keyspace of the mask to start at, to resume an interrupted search
+     */
+    @Builder.Default
+    private final long maskOffset = 0;
+
+    /**
+     * Number of mask candidates to try from the offset on, {@code -1} for the rest of the keyspace. Together with the
+     * offset it hands a range of the keyspace to one of several processes.
+     */
+    @Builder.Default
+    private final long maskCount = -1;
+
+    /**
+     * File keeping which passwords unlocked which archives across runs, {@code null} to learn within the run only
+     */
+    @Builder.Default
+    private final String statsFile = null;
+
+    /**
+     * Expiry of the leases through which several hosts sharing the input directory claim archives, a host holding
+     * one renews it four times as often. {@code 0} if no other host works on the input directory.
+     */
+    @Builder.Default
+    private final int leaseSeconds = 0;
+
+    /**
+     * File remembering across runs which archives were extracted and with which password, {@code null} for none
+     */
+    @Builder.Default
+    private final String indexFile = null;
+
+    /**
+     * Selects the entries extracted from every archive, archives are not removed unless all entries are extracted
+     */
+    @Builder.Default
+    private final EntryFilter entryFilter = EntryFilter.ALL;
+
+    public static ExtractionOptions defaults() {
+        return ExtractionOptions.builder().build();
+    }
+}
@@ -0,0 +1,17 @@
+package com.underground.extractor.service;
+
+import java.io.File;
+
+/**
+ * Outcome of processing one archive (or the first volume of a multipart archive) in a batch.
+ */
+public record ExtractionResult(File archive, Status status, long passwordsTried, String message) {
+
+    public enum Status {
+        EXTRACTED, NO_PASSWORD, FAILED,
+        /**
+         * Another host sharing the input directory processes the archive, or it was extracted in an earlier run
+         */
+        SKIPPED
+    }
+}
@@ -1,140 +1,501 @@
 package com.underground.extractor.service;
 
-import com.underground.extractor.Utils;
+import com.underground.extractor.handler.CorruptArchiveException;
+import com.underground.extractor.handler.ExtractionSettings;
 import com.underground.extractor.handler.IArchiveExtractor;
 import com.underground.extractor.handler.WrongPassException;
+import com.underground.extractor.password.ChainedSource;
+import com.underground.extractor.password.MappedWordlist;
+import com.underground.extractor.password.MaskSource;
+import com.underground.extractor.password.PasswordSource;
+import com.underground.extractor.password.PrioritizedSource;
+import com.underground.extractor.password.Rule;
+import com.underground.extractor.password.RuleMutator;
+import com.underground.extractor.volume.VolumeSets;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
 @Service
 public class ExtractorService {
 
     private final IArchiveExtractor archiveExtractor;
+    private final PasswordSearch passwordSearch;
+    /**
+     * Candidates remembered by every iteration over the password file to drop duplicates, 16 bytes each
+     */
+    @Value("${extractor.dedup.max-entries:4194304}")
+    private long dedupEntries = MappedWordlist.DEFAULT_DEDUP_ENTRIES;
     Logger logger = LoggerFactory.getLogger(ExtractorService.class);
 
     public ExtractorService(IArchiveExtractor archiveExtractor) {
         this.archiveExtractor = archiveExtractor;
+        this.passwordSearch = new PasswordSearch(archiveExtractor);
     }
 
 
-    public void extract(String inputDir, String outputDir, String passwordsFile, boolean removeAfterExtraction) {
+    public List<ExtractionResult> extract(String inputDir, String outputDir, String passwordsFile, boolean removeAfterExtraction) {
+        return extract(inputDir, outputDir, passwordsFile, removeAfterExtraction, ExtractionOptions.defaults());
+    }
+
+    /**
+     * Extracts every archive found in the input directory, processing up to {@code options.threads} archives in parallel.
+     */
+    public List<ExtractionResult> extract(String inputDir, String outputDir, String passwordsFile, boolean removeAfterExtraction,
+                                          ExtractionOptions options) {
 
-        //read all password from the text file - line by line
-        final List<String> allPasswords = new ArrayList<>();
+        if (removeAfterExtraction) {
+            logger.warn("User requested removal of the file(s) after extraction!");
+        }
+
+        //index the input directory first, so the archives can be handed out to the workers
+        List<Archive> archives = new ArrayList<>();
         try {
-            allPasswords.addAll(Files.readAllLines(Paths.get(passwordsFile)));
+            VolumeSets.Index index = index(Paths.get(inputDir), Integer.MAX_VALUE);
+            index.unsupported().forEach(file -> logger.warn("Unsupported file format: {}. Ignoring...", file.getName()));
+            index.singles().forEach(file -> archives.add(Archive.single(file)));
+            for (VolumeSets.VolumeSet set : index.sets()) {
+                if (set.completeness() == VolumeSets.Completeness.INCOMPLETE) {
+                    logger.warn("Incomplete volume set {}: {}", set.first().getName(), set.problem());
+                }
+                archives.add(Archive.of(set));
+            }
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new RuntimeException(e);
         }
 
-        if (removeAfterExtraction) {
-            logger.warn("User requested removal of the file(s) after extraction!");
+        try (PasswordSource allPasswords = readPasswords(passwordsFile, options);
+             ArchiveLeases leases = openLeases(Paths.get(inputDir), options)) {
+            return extract(archives, allPasswords, outputDir, removeAfterExtraction, options, leases);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+    }
 
+    /**
+     * @return {@code null} unless leases are turned on, the input directory is not shared then
+     */
+    ArchiveLeases openLeases(Path inputDir, ExtractionOptions options) throws IOException {
+        if (options.getLeaseSeconds() <= 0) {
+            return null;
+        }
+        logger.info("Claiming archives through lease files in {}", inputDir.resolve(ArchiveLeases.DIRECTORY));
+        return ArchiveLeases.open(inputDir, Duration.ofSeconds(options.getLeaseSeconds()));
+    }
+
+    /**
+     * Indexes the input directory down to {@code maxDepth}, the lease files are no input.
+     */
+    static VolumeSets.Index index(Path root, int maxDepth) throws IOException {
+        return VolumeSets.index(root, maxDepth, ArchiveLeases::isLeaseFile);
+    }
+
+    /**
+     * Streams the passwords from the text file - line by line - without loading it, duplicates are dropped.
+     * If a rule file is given, the passwords are base words the rules are applied to. The candidates of a mask
+     * are tried after those of the file, the file may be left out then.
+     */
+    PasswordSource readPasswords(String passwordsFile, ExtractionOptions options) {
+        if (options.getMask() == null) {
+            return readPasswordsFile(passwordsFile, options);
+        }
+        MaskSource mask = new MaskSource(options.getMask(), options.getMaskOffset(), options.getMaskCount());
+        logger.info("Mask {} has a keyspace of {}, starting at {}", options.getMask(), mask.keyspace(), options.getMaskOffset());
+        if (passwordsFile == null) {
+            return mask;
+        }
+        return new ChainedSource(List.of(readPasswordsFile(passwordsFile, options), mask));
+    }
+
+    private PasswordSource readPasswordsFile(String passwordsFile, ExtractionOptions options) {
+        PasswordSource passwords;
         try {
-            //go over each archived file
-            Collection<File> filesToRemove = new ArrayList<>();
-            Files.walkFileTree(Paths.get(inputDir), new SimpleFileVisitor<>() {
-                @Override
-                public FileVisitResult visitFile(Path currPath, BasicFileAttributes attrs) {
-                    if (!Files.isDirectory(currPath)) {
-                        String fileName = currPath.getFileName().toString();
-                        File currFile = currPath.toFile();
-
-                        int passwordsTried = 0;
-                        //try each password
-                        for (String password : allPasswords) {
-                            boolean extractionOK;
-                            FileType fileType;
-
-                            try {
-                                final String startExtractMsg = "Starting to extract {}";
-                                if (Utils.isFirstMultipartArchive(fileName)) {
-                                    fileType = FileType.MULTIPART_ARCHIVE;
-                                    logger.info(startExtractMsg, fileName);
-                                    extractionOK = archiveExtractor.extractMultipartArchive(currFile, password, outputDir);
-                                } else if (Utils.isSinglepartArchive(fileName)) {
-                                    fileType = FileType.SINGLEPART_ARCHIVE;
-                                    logger.info(startExtractMsg, fileName);
-                                    extractionOK = archiveExtractor.extractArchive(currFile, password, outputDir);
-                                } else {
-                                    logger.warn("Unsupported file format or not first multipart archive: {}. Ignoring...", fileName);
-                                    break;
-                                }
-
-                                if (extractionOK) {
-                                    logger.info("Successfully finished extracting {}", fileName);
-                                    if (removeAfterExtraction) {
-                                        if (fileType.equals(FileType.SINGLEPART_ARCHIVE)) {
-                                            filesToRemove.add(currFile);
-                                            break;
-                                        } else {
-                                            Collection<File> parts = getAllParts(currFile, inputDir);
-                                            filesToRemove.addAll(parts);
-                                        }
-                                    }
-                                } else {
-                                    logger.warn("Could not finish extracting {}", fileName);
-                                }
-
-                            } catch (WrongPassException e) {
-                                passwordsTried++;
-                                if (passwordsTried >= allPasswords.size()) {
-                                    logger.warn("No suitable password for {}", fileName);
-                                }
-                            } catch (Exception e) {
-                                logger.warn("Unforeseen exception: {}", e.getMessage());
-                            }
+            // with rules, the candidates are deduplicated and the base words don't have to be
+            passwords = MappedWordlist.open(Paths.get(passwordsFile), options.getRulesFile() == null ? dedupEntries : 0);
+        } catch (IOException e) {
+            logger.error("Could not read passwords from {}: {}", passwordsFile, e.getMessage());
+            passwords = PasswordSource.of(List.of());
+        }
+        if (options.getRulesFile() == null) {
+            return passwords;
+        }
+        try {
+            List<Rule> rules = RuleMutator.load(options.getRulesFile());
+            logger.info("Applying {} rules to every password", rules.size());
+            return new RuleMutator(passwords, rules, dedupEntries);
+        } catch (IOException | IllegalArgumentException e) {
+            closeQuietly(passwords);
+            throw new IllegalArgumentException("Could not read rules from " + options.getRulesFile() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void closeQuietly(PasswordSource passwords) {
+        try {
+            passwords.close();
+        } catch (IOException e) {
+            logger.warn("Could not close the password file: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Extracts the given archives, removes the extracted ones if requested and logs a summary.
+     */
+    List<ExtractionResult> extract(List<Archive> archives, PasswordSource allPasswords, String outputDir,
+                                   boolean removeAfterExtraction, ExtractionOptions options) {
+        return extract(archives, allPasswords, outputDir, removeAfterExtraction, options, null);
+    }
+
+    /**
+     * @param leases {@code null} if no other host works on the input directory, else only the archives claimed
+     *               are processed and the others are skipped. An extracted archive is then removed right away,
+     *               while its lease is still held.
+     */
+    List<ExtractionResult> extract(List<Archive> archives, PasswordSource allPasswords, String outputDir,
+                                   boolean removeAfterExtraction, ExtractionOptions options, ArchiveLeases leases) {
+        ExtractionSettings settings = new ExtractionSettings(Duration.ofSeconds(options.getVolumeWaitSeconds()),
+                options.getEntryFilter());
+        if (removeAfterExtraction && !options.getEntryFilter().isAll()) {
+            logger.warn("Only selected entries are extracted, archives won't be removed");
+            removeAfterExtraction = false;
+        }
+
+        PasswordStats stats;
+        try {
+            stats = PasswordStats.load(options.getStatsFile());
+        } catch (IOException e) {
+            logger.warn("Could not read password statistics from {}: {}", options.getStatsFile(), e.getMessage());
+            stats = PasswordStats.forRun();
+        }
+        PasswordStats passwordStats = stats;
+        boolean remove = removeAfterExtraction;
+        ArchiveIndex index;
+        try {
+            index = ArchiveIndex.open(options.getIndexFile());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the archive index " + options.getIndexFile(), e);
+        }
+
+        List<ExtractionResult> results = new ArrayList<>();
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, options.getThreads()));
+        try {
+            List<Future<ExtractionResult>> futures = new ArrayList<>();
+            for (Archive archive : archives) {
+                futures.add(workers.submit(() -> {
+                    if (leases == null) {
+                        return process(archive, allPasswords, outputDir, options, settings, passwordStats, index,
+                                () -> true);
+                    }
+                    if (!leases.claim(archive)) {
+                        return new ExtractionResult(archive.file(), ExtractionResult.Status.SKIPPED, 0,
+                                "Claimed by another host");
+                    }
+                    boolean completed = false;
+                    try {
+                        ExtractionResult result = process(archive, allPasswords, outputDir, options, settings,
+                                passwordStats, index, () -> leases.holds(archive));
+                        if (result.status() != ExtractionResult.Status.EXTRACTED) {
+                            return result;
+                        }
+                        // the files belong to whoever holds the lease
+                        if (!leases.confirm(archive)) {
+                            logger.warn("Lost the lease of {} to another host, its files are left to it", archive.file().getName());
+                            return result;
+                        }
+                        if (remove) {
+                            remove(volumes(archive));
+                        }
+                        leases.complete(archive, result.status());
+                        completed = true;
+                        return result;
+                    } finally {
+                        if (!completed) {
+                            leases.release(archive);
                         }
                     }
-                    return FileVisitResult.CONTINUE;
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    results.add(new ExtractionResult(archives.get(i).file(), ExtractionResult.Status.FAILED, 0,
+                            e.getCause().getMessage()));
                 }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            workers.shutdownNow();
+        }
 
+        try {
+            passwordStats.save();
+        } catch (IOException e) {
+            logger.warn("Could not save password statistics to {}: {}", options.getStatsFile(), e.getMessage());
+        }
+        if (index != null) {
+            try {
+                index.close();
+            } catch (IOException e) {
+                logger.warn("Could not compact the archive index {}: {}", options.getIndexFile(), e.getMessage());
+            }
+        }
 
-            });
-            //remove files
-            filesToRemove.forEach(file -> {
-                if (file.delete()) {
-                    logger.info("Successfully removed {}", file.getName());
-                } else {
-                    logger.warn("Could not remove {}", file.getName());
+        //remove files, with leases they were removed while the lease was held
+        if (remove && leases == null) {
+            Collection<File> filesToRemove = new ArrayList<>();
+            for (int i = 0; i < archives.size(); i++) {
+                if (results.get(i).status() == ExtractionResult.Status.EXTRACTED) {
+                    filesToRemove.addAll(volumes(archives.get(i)));
                 }
-            });
+            }
+            remove(filesToRemove);
+        }
+
+        logSummary(results);
+        return results;
+    }
+
+    private void remove(Collection<File> files) {
+        files.forEach(file -> {
+            if (file.delete()) {
+                logger.info("Successfully removed {}", file.getName());
+            } else {
+                logger.warn("Could not remove {}", file.getName());
+            }
+        });
+    }
+
+    /**
+     * Extracts a single archive, trying the password it was extracted with before and the passwords which unlocked
+     * similar archives first. An archive the index knows as extracted is skipped.
+     *
+     * @param index     {@code null} if nothing is remembered across runs
+     * @param leaseHeld whether this host may still work on the archive, it is given up as soon as not
+     */
+    private ExtractionResult process(Archive archive, PasswordSource allPasswords, String outputDir,
+                                     ExtractionOptions options, ExtractionSettings settings,
+                                     PasswordStats passwordStats, ArchiveIndex index, BooleanSupplier leaseHeld)
+            throws InterruptedException {
+        if (archive.problem() != null) {
+            if (options.getVolumeWaitSeconds() <= 0) {
+                return new ExtractionResult(archive.file(), ExtractionResult.Status.FAILED, 0,
+                        "Incomplete volume set: " + archive.problem());
+            }
+            // the missing volumes may still be copied, the extractor waits for them when it gets to them
+            logger.info("{}: {}, waiting up to {}s for it", archive.file().getName(), archive.problem(),
+                    options.getVolumeWaitSeconds());
+        }
+        // an archive only partly extracted isn't remembered as extracted, nor one with volumes still to come
+        String fingerprint = index != null && options.getEntryFilter().isAll() && archive.problem() == null
+                ? fingerprint(archive) : null;
+        ArchiveIndex.Entry known = fingerprint != null ? index.get(fingerprint) : null;
+        if (known != null && known.status() == ExtractionResult.Status.EXTRACTED) {
+            logger.info("Skipping {}, extracted before as {}", archive.file().getName(), known.name());
+            return new ExtractionResult(archive.file(), ExtractionResult.Status.SKIPPED, 0, "Extracted before");
+        }
+
+        List<String> first = new ArrayList<>();
+        if (known != null && known.password() != null) {
+            first.add(known.password());
+        }
+        first.addAll(passwordStats.ranked(archive.file()));
+        var passwords = new PrioritizedSource(first, allPasswords.forArchive(archive.file().getName()));
+        AtomicReference<String> found = new AtomicReference<>();
+        Consumer<String> onPasswordFound = password -> {
+            passwordStats.recordHit(archive.file(), password);
+            found.set(password);
+        };
+        ExtractionResult result;
+        try {
+            result = options.getSearchThreads() > 1
+                    ? extractWithPasswordSearch(archive, passwords, outputDir, settings, options.getSearchThreads(),
+                    onPasswordFound, leaseHeld)
+                    : extractWithPasswords(archive, passwords, outputDir, settings, onPasswordFound, leaseHeld);
+        } finally {
+            archiveExtractor.release(archive.file());
+        }
+        if (fingerprint != null) {
+            try {
+                index.record(fingerprint, result.status(), archive.file().getName(), found.get());
+            } catch (IOException e) {
+                logger.warn("Could not remember {} in the archive index: {}", archive.file().getName(), e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * All volumes of the archive, including those which only arrived while it was extracted
+     */
+    private List<File> volumes(Archive archive) {
+        if (archive.problem() == null) {
+            return archive.volumes();
+        }
+        try {
+            return VolumeSets.setOf(archive.file()).map(VolumeSets.VolumeSet::volumes).orElse(archive.volumes());
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            logger.warn("Could not list the volumes of {}: {}", archive.file().getName(), e.getMessage());
+            return archive.volumes();
+        }
+    }
+
+    private String fingerprint(Archive archive) {
+        try {
+            return ArchiveIndex.fingerprint(archive.volumes());
+        } catch (IOException e) {
+            logger.warn("Could not fingerprint {}: {}", archive.file().getName(), e.getMessage());
+            return null;
         }
+    }
+
+    private ExtractionResult extractWithPasswords(Archive archive, PasswordSource allPasswords, String outputDir,
+                                                  ExtractionSettings settings, Consumer<String> onPasswordFound,
+                                                  BooleanSupplier leaseHeld) {
+        String fileName = archive.file().getName();
+        long passwordsTried = 0;
+        long wrongPasswords = 0;
+        String lastError = "No passwords to try";
+        //try each password
+        for (String password : allPasswords) {
+            if (!leaseHeld.getAsBoolean()) {
+                return lostLease(archive, passwordsTried);
+            }
+            passwordsTried++;
+            try {
+                logger.info("Starting to extract {}", fileName);
+                boolean extractionOK = archive.type().equals(FileType.MULTIPART_ARCHIVE)
+                        ? archiveExtractor.extractMultipartArchive(archive.file(), password, outputDir, settings)
+                        : archiveExtractor.extractArchive(archive.file(), password, outputDir, settings);
 
+                if (extractionOK) {
+                    logger.info("Successfully finished extracting {}", fileName);
+                    onPasswordFound.accept(password);
+                    //password confirmed and archive extracted, no need to try the rest
+                    return new ExtractionResult(archive.file(), ExtractionResult.Status.EXTRACTED, passwordsTried, null);
+                }
+                logger.warn("Could not finish extracting {}", fileName);
+                lastError = "Could not finish extracting";
+            } catch (WrongPassException e) {
+                wrongPasswords++;
+            } catch (CorruptArchiveException e) {
+                //no password will open it
+                logger.warn("Corrupt archive {}: {}", fileName, e.getMessage());
+                return new ExtractionResult(archive.file(), ExtractionResult.Status.FAILED, passwordsTried, e.getMessage());
+            } catch (Exception e) {
+                logger.warn("Unforeseen exception: {}", e.getMessage());
+                lastError = e.getMessage();
+            }
+        }
+        if (wrongPasswords > 0 && wrongPasswords == passwordsTried) {
+            logger.warn("No suitable password for {}", fileName);
+            return new ExtractionResult(archive.file(), ExtractionResult.Status.NO_PASSWORD, passwordsTried, null);
+        }
+        return new ExtractionResult(archive.file(), ExtractionResult.Status.FAILED, passwordsTried, lastError);
     }
 
-    private Collection<File> getAllParts(File currFile, String inputDir) {
+    /**
+     * Searches the password with several workers first and extracts only once, with the confirmed password.
+     */
+    private ExtractionResult extractWithPasswordSearch(Archive archive, PasswordSource allPasswords, String outputDir,
+                                                       ExtractionSettings settings, int searchThreads,
+                                                       Consumer<String> onPasswordFound,
+                                                       BooleanSupplier leaseHeld)
+            throws InterruptedException {
+        String fileName = archive.file().getName();
+        boolean multipart = archive.type().equals(FileType.MULTIPART_ARCHIVE);
+        logger.info("Searching password of {} with {} workers", fileName, searchThreads);
+        PasswordSearch.Result search = passwordSearch.find(archive.file(), multipart, allPasswords, searchThreads,
+                leaseHeld, settings);
+        if (!leaseHeld.getAsBoolean()) {
+            return lostLease(archive, search.attempts());
+        }
+        if (search.password() == null && search.failure() != null) {
+            return new ExtractionResult(archive.file(), ExtractionResult.Status.FAILED, search.attempts(), search.failure());
+        }
+        if (search.password() == null) {
+            logger.warn("No suitable password for {}", fileName);
+            return new ExtractionResult(archive.file(), ExtractionResult.Status.NO_PASSWORD, search.attempts(), null);
+        }
+        onPasswordFound.accept(search.password());
+        try {
+            logger.info("Starting to extract {}", fileName);
+            boolean extractionOK = multipart
+                    ? archiveExtractor.extractMultipartArchive(archive.file(), search.password(), outputDir, settings)
+                    : archiveExtractor.extractArchive(archive.file(), search.password(), outputDir, settings);
+            if (extractionOK) {
+                logger.info("Successfully finished extracting {}", fileName);
+                return new ExtractionResult(archive.file(), ExtractionResult.Status.EXTRACTED, search.attempts(), null);
+            }
+            logger.warn("Could not finish extracting {}", fileName);
+            return new ExtractionResult(archive.file(), ExtractionResult.Status.FAILED, search.attempts(), "Could not finish extracting");
+        } catch (Exception e) {
+            logger.warn("Unforeseen exception: {}", e.getMessage());
+            return new ExtractionResult(archive.file(), ExtractionResult.Status.FAILED, search.attempts(), e.getMessage());
+        }
+    }
 
-        String fileName = currFile.getName();
-        Collection<File> files = new ArrayList<>();
-        //add first
-        files.add(currFile);
+    private ExtractionResult lostLease(Archive archive, long passwordsTried) {
+        logger.warn("Lost the lease of {} to another host, leaving it", archive.file().getName());
+        return new ExtractionResult(archive.file(), ExtractionResult.Status.SKIPPED, passwordsTried,
+                "Lease lost to another host");
+    }
 
-        //iterate over the rest
-        String incrementedFileName = Utils.getNextMultipartByIncrementingCounter(fileName);
-        File nextFile = Paths.get(inputDir, incrementedFileName).toFile();
-        while (nextFile.exists()) {
-            files.add(nextFile);
-            incrementedFileName = Utils.getNextMultipartByIncrementingCounter(incrementedFileName);
-            nextFile = Paths.get(inputDir, incrementedFileName).toFile();
+    private void logSummary(List<ExtractionResult> results) {
+        long extracted = results.stream().filter(r -> r.status() == ExtractionResult.Status.EXTRACTED).count();
+        long noPassword = results.stream().filter(r -> r.status() == ExtractionResult.Status.NO_PASSWORD).count();
+        long skipped = results.stream().filter(r -> r.status() == ExtractionResult.Status.SKIPPED).count();
+        logger.info("Summary: {} archive(s) processed, {} extracted, {} without matching password, {} failed, {} skipped",
+                results.size(), extracted, noPassword, results.size() - extracted - noPassword - skipped, skipped);
+        for (ExtractionResult result : results) {
+            if (result.message() != null) {
+                logger.info("  {} {} (passwords tried: {}): {}", result.status(), result.archive().getName(),
+                        result.passwordsTried(), result.message());
+            } else {
+                logger.info("  {} {} (passwords tried: {})", result.status(), result.archive().getName(),
+                        result.passwordsTried());
+            }
         }
-        return files;
     }
 
-    private enum FileType {
+    enum FileType {
         SINGLEPART_ARCHIVE, MULTIPART_ARCHIVE
     }
 
+    /**
+     * @param file    the file the archive is opened with
+     * @param volumes all files of the archive
+     * @param problem why the archive can't be extracted, if it can't
+     */
+    record Archive(File file, FileType type, List<File> volumes, String problem) {
+
+        static Archive single(File file) {
+            return new Archive(file, FileType.SINGLEPART_ARCHIVE, List.of(file), null);
+        }
+
+        static Archive of(VolumeSets.VolumeSet set) {
+            return new Archive(set.first(), FileType.MULTIPART_ARCHIVE, set.volumes(), set.problem());
+        }
+    }
+
 }
@@ -0,0 +1,104 @@
+package com.underground.extractor.service;
+
+import com.underground.extractor.handler.AttemptResult;
+import com.underground.extractor.handler.ExtractionSettings;
+import com.underground.extractor.handler.IArchiveExtractor;
+import com.underground.extractor.handler.IAttemptSession;
+import com.underground.extractor.password.PasswordSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Searches the password of a single archive with several workers, each trying a part of the candidates
+ * as split by {@link PasswordSource#split(int)}, which still roughly respects the order of the list.
+ * Every worker opens the archive once in a session of its own, and all workers stop as soon as one of them
+ * confirms a password.
+ */
+class PasswordSearch {
+
+    private final IArchiveExtractor archiveExtractor;
+    Logger logger = LoggerFactory.getLogger(PasswordSearch.class);
+
+    PasswordSearch(IArchiveExtractor archiveExtractor) {
+        this.archiveExtractor = archiveExtractor;
+    }
+
+    /**
+     * @return the result, whose password is {@code null} if none of the candidates fits
+     */
+    Result find(File archive, boolean multipart, PasswordSource passwords, int workers) throws InterruptedException {
+        return find(archive, multipart, passwords, workers, () -> true, ExtractionSettings.DEFAULT);
+    }
+
+    /**
+     * @param goOn     asked before every attempt, the workers stop once it says no
+     * @param settings of the extraction the password is searched for
+     */
+    Result find(File archive, boolean multipart, PasswordSource passwords, int workers, BooleanSupplier goOn,
+                ExtractionSettings settings) throws InterruptedException {
+        int workerCount = Math.max(1, workers);
+        AtomicReference<String> hit = new AtomicReference<>();
+        AtomicLong attempts = new AtomicLong();
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Iterable<String> part : passwords.split(workerCount)) {
+            tasks.add(() -> {
+                IAttemptSession session = null;
+                try {
+                    for (String password : part) {
+                        if (hit.get() != null || !goOn.getAsBoolean() || Thread.currentThread().isInterrupted()) {
+                            break;
+                        }
+                        if (session == null) {
+                            // a part without candidates doesn't open the archive at all
+                            session = archiveExtractor.openSession(archive, multipart, settings);
+                        }
+                        attempts.incrementAndGet();
+                        AttemptResult result = session.attempt(password);
+                        if (result == AttemptResult.OK) {
+                            hit.compareAndSet(null, password);
+                            break;
+                        }
+                        if (result == AttemptResult.UNSUPPORTED) {
+                            logger.warn("'{}' uses a method that can't be decoded", archive);
+                            break;
+                        }
+                    }
+                } catch (Exception e) {
+                    logger.warn("Could not open '{}': {}", archive, e.getMessage());
+                    failure.compareAndSet(null, e.getMessage());
+                } finally {
+                    if (session != null) {
+                        session.close();
+                    }
+                }
+                return null;
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(workerCount);
+        try {
+            executor.invokeAll(tasks);
+        } finally {
+            executor.shutdownNow();
+        }
+        return new Result(hit.get(), attempts.get(), failure.get());
+    }
+
+    /**
+     * @param failure why the archive could not be opened, if it could not
+     */
+    record Result(String password, long attempts, String failure) {
+    }
+}
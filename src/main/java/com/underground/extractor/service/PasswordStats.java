@@ -0,0 +1,146 @@
+package com.underground.extractor.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Counts which passwords unlocked archives, overall, per folder and per name pattern, so the passwords that
+ * fit archives like the next one are tried first. A hit counts at once for the archives still to come in the
+ * same run, the counts are kept in a file across runs if one is given.
+ * <p>
+ * Each line of the file holds the scope, the number of hits and the password, separated by tabs.
+ */
+class PasswordStats {
+
+    /**
+     * How many passwords of the statistics are tried ahead of the others
+     */
+    static final int PRIORITIZED = 100;
+
+    private static final String OVERALL = "*";
+    private static final String FOLDER = "dir:";
+    private static final String NAME = "name:";
+    private static final Pattern ARCHIVE_SUFFIX = Pattern.compile("(\\.part\\d+\\.rar|\\.(7z|7zip|zip|rar)(\\.\\d+)?)$");
+    private static final Pattern DIGITS = Pattern.compile("\\d+");
+
+    Logger logger = LoggerFactory.getLogger(PasswordStats.class);
+
+    private final Path file;
+    /**
+     * Hits of the passwords by scope
+     */
+    private final Map<String, Map<String, Integer>> hits = new HashMap<>();
+
+    private PasswordStats(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Statistics for the current run only
+     */
+    static PasswordStats forRun() {
+        return new PasswordStats(null);
+    }
+
+    /**
+     * @param file {@code null} to keep the statistics for the current run only
+     */
+    static PasswordStats load(String file) throws IOException {
+        PasswordStats stats = new PasswordStats(file == null ? null : Path.of(file));
+        if (stats.file == null || !Files.exists(stats.file)) {
+            return stats;
+        }
+        for (String line : Files.readAllLines(stats.file, StandardCharsets.UTF_8)) {
+            String[] fields = line.split("\t", 3);
+            if (fields.length < 3) {
+                continue;
+            }
+            try {
+                stats.add(fields[0], fields[2], Integer.parseInt(fields[1]));
+            } catch (NumberFormatException e) {
+                stats.logger.warn("Skipping malformed line in {}: {}", stats.file, line);
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Counts the password for the folder and name of the archive.
+     */
+    synchronized void recordHit(File archive, String password) {
+        for (String scope : scopes(archive)) {
+            add(scope, password, 1);
+        }
+    }
+
+    /**
+     * The passwords which unlocked archives before, those of the same folder first, then those of archives with the
+     * same name pattern, then the others, each by number of hits.
+     */
+    synchronized List<String> ranked(File archive) {
+        List<String> scopes = scopes(archive);
+        Set<String> ranked = new LinkedHashSet<>();
+        for (int i = scopes.size() - 1; i >= 0 && ranked.size() < PRIORITIZED; i--) {
+            hits.getOrDefault(scopes.get(i), Map.of()).entrySet().stream()
+                    .sorted(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                    .map(Map.Entry::getKey)
+                    .forEach(ranked::add);
+        }
+        return ranked.stream().limit(PRIORITIZED).toList();
+    }
+
+    /**
+     * Writes the statistics to a temporary file first, so an interrupted run doesn't lose them.
+     */
+    synchronized void save() throws IOException {
+        if (file == null) {
+            return;
+        }
+        List<String> lines = new ArrayList<>();
+        hits.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(scope ->
+                scope.getValue().entrySet().stream()
+                        .sorted(Comparator.comparing(Map.Entry::getKey))
+                        .forEach(password -> lines.add(scope.getKey() + "\t" + password.getValue() + "\t" + password.getKey())));
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        Files.write(temp, lines, StandardCharsets.UTF_8);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void add(String scope, String password, int count) {
+        hits.computeIfAbsent(scope, key -> new HashMap<>()).merge(password, count, Integer::sum);
+    }
+
+    /**
+     * From the widest to the narrowest scope
+     */
+    private static List<String> scopes(File archive) {
+        File folder = archive.getAbsoluteFile().getParentFile();
+        return List.of(OVERALL, NAME + namePattern(archive.getName()), FOLDER + folder);
+    }
+
+    /**
+     * The name without archive suffix and volume counter, every number replaced by {@code #}
+     */
+    static String namePattern(String name) {
+        String base = ARCHIVE_SUFFIX.matcher(name.toLowerCase(Locale.ROOT)).replaceFirst("");
+        return DIGITS.matcher(base).replaceAll("#");
+    }
+}
@@ -0,0 +1,395 @@
+package com.underground.extractor.volume;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Classifies the files of a directory tree in a single walk and groups the volumes of multipart archives into sets,
+ * so no volume has to be looked up with {@code File.exists()}. Sets named {@code .partN.rar}, {@code .7z.001}
+ * (also zip and rar split the same way), {@code .rar} with {@code .r00} and {@code .zip} with {@code .z01} are known.
+ * A set missing a volume is flagged before any extraction is attempted. The volume names are only defined here,
+ * the static helpers tell them apart for the code handling a single file, and {@link #following(File)} walks a set
+ * volume by volume.
+ */
+public final class VolumeSets {
+
+    /**
+     * The RAR5 end of archive header is in the last bytes of a volume, maybe followed by some padding
+     */
+    private static final int RAR5_END_SEARCH = 64;
+    private static final int RAR5_END_OF_ARCHIVE = 5;
+    private static final int RAR5_END_NOT_LAST_VOLUME = 0x01;
+
+    private static final Pattern PART_RAR = Pattern.compile("(.+)\\.part(\\d+)\\.rar");
+    private static final Pattern SPLIT = Pattern.compile("(.+\\.(?:7z|7zip|zip|rar))\\.(\\d+)");
+    private static final Pattern OLD_RAR = Pattern.compile("(.+)\\.r(\\d{2})");
+    private static final Pattern SPLIT_ZIP = Pattern.compile("(.+)\\.z(\\d{2})");
+    private static final Pattern SINGLE = Pattern.compile(".+\\.(7z|7zip|zip|rar)");
+
+    private VolumeSets() {
+    }
+
+    /**
+     * Whether the name is the one of a volume of a multipart archive, only the {@code .rar} and {@code .zip}
+     * of {@code .rNN} and {@code .zNN} sets can't be told from a single part archive without their siblings.
+     */
+    public static boolean isVolume(String name) {
+        return counter(name) != null;
+    }
+
+    /**
+     * Whether the name is the one of the first volume of a {@code .partN.rar} or split set
+     */
+    public static boolean isFirstVolume(String name) {
+        Matcher matcher = counter(name);
+        return matcher != null && matcher.pattern() != OLD_RAR && matcher.pattern() != SPLIT_ZIP
+                && Long.parseLong(matcher.group(2)) == 1;
+    }
+
+    public static boolean isSingle(String name) {
+        return !isVolume(name) && SINGLE.matcher(name).matches();
+    }
+
+    /**
+     * @return the name of the archive split into {@code name.001}, {@code name.002}, ..., {@code null} if the name
+     * isn't the one of such a volume
+     */
+    public static String splitArchive(String name) {
+        Matcher matcher = SPLIT.matcher(name);
+        return matcher.matches() ? matcher.group(1) : null;
+    }
+
+    /**
+     * @return a matcher of the volume name with the counter in group 2, {@code null} if the name is no volume
+     */
+    public static Matcher counter(String name) {
+        for (Pattern pattern : List.of(PART_RAR, SPLIT, OLD_RAR, SPLIT_ZIP)) {
+            Matcher matcher = pattern.matcher(name);
+            if (matcher.matches()) {
+                return matcher;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the name of the volume after the given one, the counter keeping its width, {@code null} if the name
+     * is no volume
+     */
+    public static String nextVolume(String name) {
+        Matcher matcher = counter(name);
+        if (matcher == null) {
+            return null;
+        }
+        String counter = matcher.group(2);
+        return name.substring(0, matcher.start(2))
+                + String.format("%0" + counter.length() + "d", Long.parseLong(counter) + 1)
+                + name.substring(matcher.end(2));
+    }
+
+    /**
+     * @return the volume after the given one, {@code null} if the file is no volume or the last one by its name.
+     * Also knows the {@code .r00} after the {@code .rar} of an old style set, and the {@code .zip} after the last
+     * {@code .zNN} of a split zip, by the files next to it. The volume returned may not exist.
+     */
+    public static File following(File volume) {
+        String name = volume.getName();
+        File directory = volume.getParentFile();
+        Matcher matcher = counter(name);
+        if (matcher == null) {
+            if (!name.endsWith(".rar")) {
+                return null;
+            }
+            File first = new File(directory, name.substring(0, name.length() - ".rar".length()) + ".r00");
+            return first.exists() ? first : null;
+        }
+        File next = new File(directory, nextVolume(name));
+        // zip writes the .zip after all numbered volumes
+        if (matcher.pattern() == SPLIT_ZIP && !next.exists()) {
+            return new File(directory, matcher.group(1) + ".zip");
+        }
+        return next;
+    }
+
+    public enum Naming {
+        /**
+         * {@code name.part1.rar}, {@code name.part2.rar}, ...
+         */
+        PART_RAR,
+        /**
+         * {@code name.7z.001}, {@code name.7z.002}, ...
+         */
+        SPLIT,
+        /**
+         * {@code name.rar}, {@code name.r00}, {@code name.r01}, ...
+         */
+        OLD_RAR,
+        /**
+         * {@code name.z01}, {@code name.z02}, ..., {@code name.zip} written last
+         */
+        SPLIT_ZIP
+    }
+
+    public enum Completeness {
+        COMPLETE,
+        /**
+         * Nothing is missing, but the volumes don't tell whether more follow
+         */
+        UNKNOWN,
+        INCOMPLETE
+    }
+
+    /**
+     * @param first   the volume the archive is opened with, which may not have arrived yet
+     * @param volumes all volumes present, in order
+     * @param problem what is missing, only set for incomplete sets
+     */
+    public record VolumeSet(Naming naming, File first, List<File> volumes, Completeness completeness, String problem) {
+    }
+
+    /**
+     * @param singles     single part archives
+     * @param sets        multipart archives
+     * @param unsupported files which are no archive
+     */
+    public record Index(List<File> singles, List<VolumeSet> sets, List<File> unsupported) {
+    }
+
+    /**
+     * Indexes the files of the directory and of the directories below it, down to {@code maxDepth}.
+     */
+    public static Index index(Path root, int maxDepth) throws IOException {
+        return index(root, maxDepth, path -> false);
+    }
+
+    /**
+     * @param ignored whether a file is left out, by its path relative to the root
+     */
+    public static Index index(Path root, int maxDepth, Predicate<Path> ignored) throws IOException {
+        Map<Path, List<Path>> filesByDirectory = new LinkedHashMap<>();
+        try (Stream<Path> paths = Files.walk(root, maxDepth)) {
+            paths.filter(Files::isRegularFile)
+                    .filter(path -> !ignored.test(root.relativize(path)))
+                    .forEach(path -> filesByDirectory.computeIfAbsent(path.getParent(), directory -> new ArrayList<>()).add(path));
+        }
+        Index index = new Index(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        filesByDirectory.values().forEach(files -> indexDirectory(files, index));
+        return index;
+    }
+
+    /**
+     * Looks up the set the volume belongs to among the files next to it.
+     */
+    public static Optional<VolumeSet> setOf(File volume) throws IOException {
+        File absolute = volume.getAbsoluteFile();
+        return index(absolute.getParentFile().toPath(), 1).sets().stream()
+                .filter(set -> set.first().equals(absolute) || set.volumes().contains(absolute))
+                .findFirst();
+    }
+
+    /**
+     * @return the volume a multipart archive is opened with, if the file is one of its volumes, else {@code null}.
+     * Unlike {@link #isVolume(String)} this also knows the {@code .rar} of a {@code .rNN} set and the {@code .zip}
+     * of a {@code .zNN} set, by the files next to it.
+     */
+    public static File firstVolume(File file) throws IOException {
+        return setOf(file).map(VolumeSet::first).orElse(null);
+    }
+
+    private static void indexDirectory(List<Path> files, Index index) {
+        Map<String, Group> groups = new LinkedHashMap<>();
+        Map<String, File> singles = new LinkedHashMap<>();
+        for (Path path : files) {
+            String name = path.getFileName().toString();
+            File file = path.toFile();
+            Matcher matcher = counter(name);
+            if (matcher != null) {
+                group(groups, naming(matcher.pattern()), matcher.group(1)).add(matcher.group(2), file);
+            } else if (SINGLE.matcher(name).matches()) {
+                singles.put(name, file);
+            } else {
+                index.unsupported().add(file);
+            }
+        }
+        // the .rar of an old style set and the .zip of a split zip are volumes, not single archives
+        for (Group group : groups.values()) {
+            if (group.naming == Naming.OLD_RAR) {
+                group.head = singles.remove(group.base + ".rar");
+            } else if (group.naming == Naming.SPLIT_ZIP) {
+                group.head = singles.remove(group.base + ".zip");
+            }
+            index.sets().add(group.toSet());
+        }
+        index.singles().addAll(singles.values());
+    }
+
+    private static Naming naming(Pattern pattern) {
+        if (pattern == PART_RAR) {
+            return Naming.PART_RAR;
+        }
+        if (pattern == SPLIT) {
+            return Naming.SPLIT;
+        }
+        return pattern == OLD_RAR ? Naming.OLD_RAR : Naming.SPLIT_ZIP;
+    }
+
+    private static Group group(Map<String, Group> groups, Naming naming, String base) {
+        return groups.computeIfAbsent(naming + "/" + base, key -> new Group(naming, base));
+    }
+
+    /**
+     * The volumes of a set found so far, by their counter
+     */
+    private static class Group {
+        private final Naming naming;
+        private final String base;
+        private final TreeMap<Long, File> numbered = new TreeMap<>();
+        private File directory;
+        /**
+         * Width of the counters, if they are written with leading zeros
+         */
+        private int counterWidth = 1;
+        /**
+         * The {@code .rar} or {@code .zip} without counter
+         */
+        private File head;
+
+        Group(Naming naming, String base) {
+            this.naming = naming;
+            this.base = base;
+        }
+
+        void add(String counter, File file) {
+            numbered.put(Long.parseLong(counter), file);
+            directory = file.getParentFile();
+            if (counter.startsWith("0")) {
+                counterWidth = counter.length();
+            }
+        }
+
+        VolumeSet toSet() {
+            List<File> volumes = new ArrayList<>();
+            if (naming == Naming.OLD_RAR && head != null) {
+                volumes.add(head);
+            }
+            volumes.addAll(numbered.values());
+            if (naming == Naming.SPLIT_ZIP && head != null) {
+                volumes.add(head);
+            }
+            File first = first();
+
+            String missing = missing();
+            if (missing != null) {
+                return new VolumeSet(naming, first, volumes, Completeness.INCOMPLETE, missing);
+            }
+            return switch (naming) {
+                // zip writes the .zip after all other volumes
+                case SPLIT_ZIP -> new VolumeSet(naming, first, volumes, Completeness.COMPLETE, null);
+                case SPLIT -> splitCompleteness(first, volumes);
+                default -> rarCompleteness(first, volumes);
+            };
+        }
+
+        /**
+         * The volume 7-Zip opens the set with, named after the others if it is missing
+         */
+        private File first() {
+            return switch (naming) {
+                case OLD_RAR -> head != null ? head : new File(directory, base + ".rar");
+                // 7-Zip opens a split zip with the .zip and asks for the .zNN volumes itself
+                case SPLIT_ZIP -> head != null ? head : new File(directory, base + ".zip");
+                default -> {
+                    if (numbered.firstKey() == 1) {
+                        yield numbered.firstEntry().getValue();
+                    }
+                    String counter = String.format("%0" + counterWidth + "d", 1);
+                    yield new File(directory, naming == Naming.PART_RAR ? base + ".part" + counter + ".rar" : base + "." + counter);
+                }
+            };
+        }
+
+        /**
+         * Looks for gaps in the counters and for a missing {@code .rar} or {@code .zip}
+         */
+        private String missing() {
+            if (naming == Naming.OLD_RAR && head == null) {
+                return base + ".rar missing";
+            }
+            if (naming == Naming.SPLIT_ZIP && head == null) {
+                return base + ".zip missing";
+            }
+            long expected = naming == Naming.OLD_RAR ? 0 : 1;
+            for (long counter : numbered.keySet()) {
+                if (counter != expected) {
+                    return "volume " + expected + " of " + base + " missing";
+                }
+                expected++;
+            }
+            return null;
+        }
+
+        /**
+         * Every volume of a split archive except the last has the size of the first one, a smaller one ends the set.
+         */
+        private VolumeSet splitCompleteness(File first, List<File> volumes) {
+            long firstLength = first.length();
+            for (File volume : volumes.subList(0, volumes.size() - 1)) {
+                if (volume.length() != firstLength) {
+                    return new VolumeSet(naming, first, volumes, Completeness.INCOMPLETE, volume.getName() + " is incomplete");
+                }
+            }
+            File last = volumes.get(volumes.size() - 1);
+            Completeness completeness = volumes.size() > 1 && last.length() < firstLength
+                    ? Completeness.COMPLETE : Completeness.UNKNOWN;
+            return new VolumeSet(naming, first, volumes, completeness, null);
+        }
+
+        /**
+         * RAR5 volumes tell in their end of archive header whether another one follows, older ones don't.
+         */
+        private VolumeSet rarCompleteness(File first, List<File> volumes) {
+            File last = volumes.get(volumes.size() - 1);
+            Boolean isLast = isLastRar5Volume(last);
+            if (Boolean.FALSE.equals(isLast)) {
+                return new VolumeSet(naming, first, volumes, Completeness.INCOMPLETE, "volumes after " + last.getName() + " missing");
+            }
+            return new VolumeSet(naming, first, volumes, isLast == null ? Completeness.UNKNOWN : Completeness.COMPLETE, null);
+        }
+    }
+
+    /**
+     * @return {@code null} if the end of archive header can't be found
+     */
+    static Boolean isLastRar5Volume(File volume) {
+        try (var file = new RandomAccessFile(volume, "r")) {
+            int length = (int) Math.min(RAR5_END_SEARCH, file.length());
+            byte[] tail = new byte[length];
+            file.seek(file.length() - length);
+            file.readFully(tail);
+            // CRC32, header size 3, type, header flags, end of archive flags, each fitting in a single byte
+            for (int i = length - 8; i >= 0; i--) {
+                if (tail[i + 4] != 3 || tail[i + 5] != RAR5_END_OF_ARCHIVE) {
+                    continue;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(tail, i + 4, 4);
+                long stored = (tail[i] & 0xFFL) | (tail[i + 1] & 0xFFL) << 8 | (tail[i + 2] & 0xFFL) << 16 | (tail[i + 3] & 0xFFL) << 24;
+                if (crc.getValue() == stored) {
+                    return (tail[i + 7] & RAR5_END_NOT_LAST_VOLUME) == 0;
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return null;
+    }
+}
@@ -282,4 +282,39 @@ class UtilsTest {
         assertEquals("filename001.7z.3", nextFilename4 , String.format(errorMessage, filename4));
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void counterKeepsItsWidthWhenIncrementedPastNine(){
+        //WHEN
+        String nextFilename1 = Utils.getNextMultipartByIncrementingCounter("file.7z.009");
+        String nextFilename2 = Utils.getNextMultipartByIncrementingCounter("file.r09");
+
+        //THEN
+        assertEquals("file.7z.010", nextFilename1);
+        assertEquals("file.r10", nextFilename2);
+    }
+
+    @Test
+    void oldStyleRarSplitZipAndNumberedVolumesMatchAsMultipart() {
+        //GIVEN
+        String filename1 = "something.r00";
+        String filename2 = "something.z01";
+        String filename3 = "something.zip.001";
+        String filename4 = "something.rar.002";
+
+        //WHEN
+        boolean matched1 = Utils.isMultipartArchive(filename1);
+        boolean matched2 = Utils.isMultipartArchive(filename2);
+        boolean matched3 = Utils.isMultipartArchive(filename3);
+        boolean matched4 = Utils.isMultipartArchive(filename4);
+
+        //THEN
+        String errorMessage = "Filename '%s' was NOT matched by regex as multipart archive, but should have been!";
+        assertTrue(matched1, String.format(errorMessage, filename1));
+        assertTrue(matched2, String.format(errorMessage, filename2));
+        assertTrue(matched3, String.format(errorMessage, filename3));
+        assertTrue(matched4, String.format(errorMessage, filename4));
+        assertTrue(Utils.isFirstMultipartArchive(filename3));
+        assertFalse(Utils.isFirstMultipartArchive(filename4));
+    }
+}
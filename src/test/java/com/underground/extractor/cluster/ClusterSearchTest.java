@@ -0,0 +1,156 @@
+package com.underground.extractor.cluster;
+
+import com.underground.extractor.handler.AttemptResult;
+import com.underground.extractor.handler.IArchiveExtractor;
+import com.underground.extractor.handler.IAttemptSession;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ClusterSearchTest {
+
+    @Mock
+    IArchiveExtractor archiveExtractor;
+    @Mock
+    IAttemptSession session;
+    @TempDir
+    private Path dir;
+    //the workers are sent the absolute path
+    private final File archive = new File("archive.7z").getAbsoluteFile();
+
+    private SearchResult search(Job job, int workers) throws Exception {
+        return search(job, workers, password -> true);
+    }
+
+    private SearchResult search(Job job, int workers, Predicate<String> verifier) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try (var coordinator = ClusterCoordinator.listen(InetAddress.getLoopbackAddress(), 0, job, verifier)) {
+            List<Future<String>> found = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                found.add(executor.submit(() -> new ClusterWorker(archiveExtractor, 5).work("localhost", coordinator.port())));
+            }
+            SearchResult result = coordinator.run();
+            for (Future<String> worker : found) {
+                worker.get();
+            }
+            return result;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void givenMaskJob_whenWorkersSearch_thenPasswordFoundAndAllStop() throws Exception {
+        //GIVEN
+        when(archiveExtractor.openSession(archive, false)).thenReturn(session);
+        when(session.attempt(anyString())).thenAnswer(invocation -> {
+            if (invocation.getArgument(0).equals("x737")) {
+                return AttemptResult.OK;
+            }
+            Thread.sleep(1);
+            return AttemptResult.WRONG_PASSWORD;
+        });
+
+        //WHEN
+        SearchResult result = search(new Job(archive, false, Job.Kind.MASK, "x?d?d?d", 0, 1000), 3);
+
+        //THEN
+        assertEquals("x737", result.password());
+        assertNull(result.failure());
+        assertTrue(result.attempts() < 1000, "Workers should have stopped");
+    }
+
+    @Test
+    void givenPasswordFoundWhichDoesNotOpenArchive_whenVerified_thenSearchGoesOn() throws Exception {
+        //GIVEN
+        //the session accepts a wrong password as well, like a zip check value matching by chance
+        when(archiveExtractor.openSession(archive, false)).thenReturn(session);
+        when(session.attempt(anyString())).thenAnswer(invocation -> {
+            String password = invocation.getArgument(0);
+            if (password.equals("x111") || password.equals("x737")) {
+                return AttemptResult.OK;
+            }
+            Thread.sleep(1);
+            return AttemptResult.WRONG_PASSWORD;
+        });
+
+        //WHEN
+        SearchResult result = search(new Job(archive, false, Job.Kind.MASK, "x?d?d?d", 0, 1000), 3,
+                password -> password.equals("x737"));
+
+        //THEN
+        assertEquals("x737", result.password());
+    }
+
+    @Test
+    void givenWrongPasswordsReportedAsCorrupt_whenWorkersSearch_thenSearchGoesOn() throws Exception {
+        //GIVEN
+        //a wrong password passing the zip check byte fails with a CRC error
+        when(archiveExtractor.openSession(archive, false)).thenReturn(session);
+        when(session.attempt(anyString())).thenAnswer(invocation -> {
+            if (invocation.getArgument(0).equals("x737")) {
+                return AttemptResult.OK;
+            }
+            return AttemptResult.CORRUPT;
+        });
+
+        //WHEN
+        SearchResult result = search(new Job(archive, false, Job.Kind.MASK, "x?d?d?d", 0, 1000), 3);
+
+        //THEN
+        assertEquals("x737", result.password());
+        assertNull(result.failure());
+    }
+
+    @Test
+    void givenWordlistJob_whenNoPasswordFits_thenEveryLineTriedDespiteStealing() throws Exception {
+        //GIVEN
+        List<String> lines = IntStream.range(0, 300).mapToObj(i -> "password" + i).toList();
+        Path wordlist = Files.write(dir.resolve("wordlist.txt"), lines);
+        Set<String> tried = ConcurrentHashMap.newKeySet();
+        when(archiveExtractor.openSession(archive, true)).thenReturn(session);
+        when(session.attempt(anyString())).thenAnswer(invocation -> {
+            tried.add(invocation.getArgument(0));
+            // the first lines take longer, so the other workers steal from the one having them
+            if (((String) invocation.getArgument(0)).length() < 10) {
+                Thread.sleep(5);
+            }
+            return AttemptResult.WRONG_PASSWORD;
+        });
+
+        //WHEN
+        SearchResult result = search(new Job(archive, true, Job.Kind.WORDLIST, wordlist.toString(), 0, Files.size(wordlist)), 3);
+
+        //THEN
+        assertNull(result.password());
+        assertEquals(Set.copyOf(lines), tried);
+        assertTrue(result.attempts() >= lines.size());
+    }
+
+    @Test
+    void givenFieldsWithSeparators_whenEscaped_thenReadBackUnchanged() {
+        String line = String.join("\t", Protocol.escape("FOUND"), Protocol.escape("3"), Protocol.escape("a\tb\\n\nc"));
+        assertEquals(List.of("FOUND", "3", "a\tb\\n\nc"), Protocol.fields(line));
+    }
+}
@@ -0,0 +1,32 @@
+package com.underground.extractor.handler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EntryFilterTest {
+
+    @Test
+    void givenPatternsSizesAndExtensions_whenMatched_thenOnlySelectedEntriesAccepted() {
+        //GIVEN
+        EntryFilter filter = new EntryFilter(List.of("*.txt", "docs/**", "regex:.*report_\\d+\\.csv"),
+                List.of("**/secret/**"), 10, 1000, List.of());
+        EntryFilter byExtension = new EntryFilter(List.of(), List.of(), 0, -1, List.of(".JPG", "png"));
+
+        //THEN
+        assertTrue(EntryFilter.ALL.isAll());
+        assertFalse(filter.isAll());
+        assertTrue(filter.accepts("notes/a.txt", 100L));
+        assertTrue(filter.accepts("docs/manual.pdf", 100L));
+        assertTrue(filter.accepts("data\\report_2024.csv", null));
+        assertFalse(filter.accepts("data/report.csv", 100L));
+        assertFalse(filter.accepts("x/secret/a.txt", 100L));
+        assertFalse(filter.accepts("a.txt", 5L));
+        assertFalse(filter.accepts("a.txt", 5000L));
+        assertTrue(byExtension.accepts("photos/IMG_1.jpg", 1L));
+        assertFalse(byExtension.accepts("photos/raw", 1L));
+        assertThrows(IllegalArgumentException.class, () -> new EntryFilter(List.of("regex:("), List.of(), 0, -1, List.of()));
+    }
+}
@@ -0,0 +1,37 @@
+package com.underground.extractor.handler.impl;
+
+import net.sf.sevenzipjbinding.ArchiveFormat;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArchiveSignaturesTest {
+
+    private final ClassLoader classLoader = getClass().getClassLoader();
+
+    private byte[] head(String name) throws IOException {
+        byte[] content = Files.readAllBytes(new File(classLoader.getResource("test_data/" + name).getFile()).toPath());
+        return Arrays.copyOf(content, Math.min(16, content.length));
+    }
+
+    @Test
+    void givenTestData_whenSniffed_thenFormatOfEveryArchiveKnown() throws IOException {
+        assertEquals(ArchiveFormat.ZIP, ArchiveSignatures.sniff(head("single_file_inside.zip")));
+        assertEquals(ArchiveFormat.ZIP, ArchiveSignatures.sniff(head("single_file_inside.zip.001")));
+        assertEquals(ArchiveFormat.SEVEN_ZIP, ArchiveSignatures.sniff(head("single_file_inside.7z")));
+        assertEquals(ArchiveFormat.SEVEN_ZIP, ArchiveSignatures.sniff(head("single_file_inside.7z.001")));
+        assertEquals(ArchiveFormat.RAR5, ArchiveSignatures.sniff(head("single_file_inside.part01.rar")));
+    }
+
+    @Test
+    void givenRar4OrUnknownHead_whenSniffed_thenRarOrNothing() {
+        assertEquals(ArchiveFormat.RAR, ArchiveSignatures.sniff(new byte[]{'R', 'a', 'r', '!', 0x1A, 7, 0, (byte) 0xCF}));
+        assertNull(ArchiveSignatures.sniff("plain text".getBytes()));
+        assertNull(ArchiveSignatures.sniff(new byte[]{'P', 'K'}));
+    }
+}
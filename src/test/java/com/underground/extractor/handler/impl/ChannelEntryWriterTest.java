@@ -0,0 +1,79 @@
+package com.underground.extractor.handler.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChannelEntryWriterTest {
+
+    @TempDir
+    private Path tempDir;
+
+    private final DirectBufferPool pool = new DirectBufferPool(64, 2);
+
+    @Test
+    void givenSmallAndLargeChunks_whenWritten_thenFileHasAllBytesInOrder() throws Exception {
+        //GIVEN
+        File file = tempDir.resolve("entry.bin").toFile();
+        Random random = new Random(42);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+
+        //WHEN
+        try (ChannelEntryWriter writer = ChannelEntryWriter.open(file, pool)) {
+            for (int length : new int[]{10, 50, 7, 200, 1, 64, 63}) {
+                byte[] chunk = new byte[length];
+                random.nextBytes(chunk);
+                expected.write(chunk);
+                assertEquals(length, writer.write(chunk));
+            }
+        }
+
+        //THEN
+        assertArrayEquals(expected.toByteArray(), Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    void givenFileLeftByEarlierRun_whenWritten_thenOnlyNewBytesKept() throws Exception {
+        //GIVEN
+        File file = Files.write(tempDir.resolve("entry.bin"), new byte[1000]).toFile();
+        byte[] chunk = new byte[100];
+
+        //WHEN
+        try (ChannelEntryWriter writer = ChannelEntryWriter.open(file, pool)) {
+            writer.write(chunk);
+        }
+
+        //THEN
+        assertEquals(100, file.length());
+    }
+
+    @Test
+    void givenWriteBehind_whenWritten_thenFileCompleteOnceCompletionDone() throws Exception {
+        //GIVEN
+        File file = tempDir.resolve("entry.bin").toFile();
+        byte[] expected = new byte[10_000];
+        new Random(7).nextBytes(expected);
+        ChannelEntryWriter writer;
+
+        //WHEN
+        try (WriteBehind writeBehind = new WriteBehind("test", 64, 2)) {
+            writer = ChannelEntryWriter.open(file, writeBehind);
+            for (int offset = 0; offset < expected.length; offset += 100) {
+                writer.write(Arrays.copyOfRange(expected, offset, offset + 100));
+            }
+            writer.close();
+            writer.completion().get();
+        }
+
+        //THEN
+        assertArrayEquals(expected, Files.readAllBytes(file.toPath()));
+    }
+}
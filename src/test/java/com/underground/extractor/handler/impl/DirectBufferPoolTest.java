@@ -0,0 +1,30 @@
+package com.underground.extractor.handler.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DirectBufferPoolTest {
+
+    @Test
+    void givenBufferOfOtherSizeReleased_whenPoolFilled_thenLimitStillHolds() {
+        //GIVEN
+        DirectBufferPool pool = new DirectBufferPool(16, 2);
+        ByteBuffer first = pool.acquire();
+        ByteBuffer second = pool.acquire();
+        ByteBuffer third = pool.acquire();
+
+        //WHEN
+        pool.release(ByteBuffer.allocateDirect(32));
+        pool.release(first);
+        pool.release(second);
+        pool.release(third);
+
+        //THEN
+        assertSame(first, pool.acquire());
+        assertSame(second, pool.acquire());
+        assertNotSame(third, pool.acquire(), "Only two buffers should have been pooled");
+    }
+}
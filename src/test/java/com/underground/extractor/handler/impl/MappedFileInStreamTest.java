@@ -0,0 +1,58 @@
+package com.underground.extractor.handler.impl;
+
+import net.sf.sevenzipjbinding.ISeekableStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedFileInStreamTest {
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    void givenMappedFile_whenSeekAndRead_thenSameBytesAsFile() throws Exception {
+        //GIVEN
+        Path path = tempDir.resolve("volume.bin");
+        byte[] content = new byte[1000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        Files.write(path, content);
+
+        try (InputFile inputFile = new InputFile(path.toString(), true)) {
+            MappedFileInStream first = (MappedFileInStream) inputFile.newStream();
+            MappedFileInStream second = (MappedFileInStream) inputFile.newStream();
+            byte[] data = new byte[10];
+
+            //WHEN
+            assertEquals(990, first.seek(-10, ISeekableStream.SEEK_END));
+            int read = first.read(data);
+
+            //THEN
+            assertEquals(10, read);
+            assertEquals((byte) 990, data[0]);
+            assertEquals(0, first.read(data), "Should be at the end");
+            assertEquals(10, second.read(new byte[10]), "Streams should have their own position");
+            assertEquals(10, second.seek(0, ISeekableStream.SEEK_CUR));
+        }
+    }
+
+    @Test
+    void givenEmptyFile_whenRead_thenEndOfStream() throws Exception {
+        //GIVEN
+        Path path = tempDir.resolve("empty.bin");
+        Files.write(path, new byte[0]);
+
+        //WHEN
+        try (InputFile inputFile = new InputFile(path.toString(), true)) {
+
+            //THEN
+            assertEquals(0, inputFile.newStream().read(new byte[10]));
+        }
+    }
+}
@@ -1,17 +1,24 @@
 package com.underground.extractor.handler.impl;
 
+import com.underground.extractor.handler.AttemptResult;
+import com.underground.extractor.handler.CorruptArchiveException;
+import com.underground.extractor.handler.EntryFilter;
+import com.underground.extractor.handler.ExtractionSettings;
 import com.underground.extractor.handler.WrongPassException;
+import net.sf.sevenzipjbinding.ArchiveFormat;
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -77,7 +84,7 @@ class SevenZipBindingsHandlerTest {
         };
     }
 
-    private void doTestWithFilesInside(String format, int nrFilesInside, FileType type) throws ExtractionException, WrongPassException, IOException {
+    private void doTestWithFilesInside(String format, int nrFilesInside, FileType type) throws ExtractionException, WrongPassException, CorruptArchiveException, IOException {
         //GIVEN
         File archiveFile = new File(classLoader.getResource(String.format("test_data/" + getArchiveMask(type, format), format)).getFile());
 
@@ -112,55 +119,125 @@ class SevenZipBindingsHandlerTest {
         return Files.mismatch(file1.toPath(), file2.toPath()) == -1L;
     }
 
-    private void doTestWithMultipleFilesInside(String format) throws ExtractionException, WrongPassException, IOException {
+    private void doTestWithMultipleFilesInside(String format) throws ExtractionException, WrongPassException, CorruptArchiveException, IOException {
         this.doTestWithFilesInside(format, 2, FileType.MULTIPLE);
     }
 
 
     @Test
-    void extractAll_pw_prot_zip_single_file_inside() throws ExtractionException, WrongPassException, IOException {
+    void extractAll_pw_prot_zip_single_file_inside() throws ExtractionException, WrongPassException, CorruptArchiveException, IOException {
         this.doTestWithFilesInside("zip", 1, FileType.SINGLE);
     }
 
     @Test
-    void extractAll_pw_prot_7z_single_file_inside() throws ExtractionException, WrongPassException, IOException {
+    void extractAll_pw_prot_zipcrypto_single_file_inside() throws ExtractionException, WrongPassException, CorruptArchiveException, IOException {
+        //GIVEN
+        File archiveFile = new File(classLoader.getResource("test_data/zipcrypto_single_file_inside.zip").getFile());
+
+        //WHEN
+        boolean extractionResult = this.handler.extractArchive(archiveFile, archivePassword, tempDir.toAbsolutePath().toString());
+
+        //THEN
+        assertTrue(extractionResult, "Should return true");
+        List<String> lines = FileUtils.readLines(tempDir.resolve("zip_zipcrypto_single_file.txt").toFile(), Charset.defaultCharset());
+        assertEquals(List.of("zip_zipcrypto_single_file_content"), lines, "Should contain predefined content");
+        assertThrows(WrongPassException.class, () -> this.handler.testArchive(archiveFile, wrongArchivePassword));
+    }
+
+    @Test
+    void extractAll_pw_prot_7z_single_file_inside() throws ExtractionException, WrongPassException, CorruptArchiveException, IOException {
         this.doTestWithFilesInside("7z", 1, FileType.SINGLE);
     }
 
     @Test
-    void extractAll_pw_prot_7z_single_file_inside_multiple_archives() throws ExtractionException, WrongPassException, IOException {
+    void extractAll_pw_prot_7z_single_file_inside_multiple_archives() throws ExtractionException, WrongPassException, CorruptArchiveException, IOException {
         this.archivePassword = "12345";
         this.doTestWithFilesInside("7z", 1, FileType.MULTIPART_SINGLE);
     }
 
     @Test
-    void extractAll_pw_prot_rar_single_file_inside_multiple_archives() throws ExtractionException, WrongPassException, IOException {
+    void extractAll_pw_prot_rar_single_file_inside_multiple_archives() throws ExtractionException, WrongPassException, CorruptArchiveException, IOException {
         this.archivePassword = "12345";
         this.doTestWithFilesInside("rar", 1, FileType.MULTIPART_SINGLE);
     }
 
     @Test
-    void extractAll_pw_prot_7z_encr_file_list_single_file_inside() throws ExtractionException, WrongPassException, IOException {
+    void extractAll_pw_prot_zip_split_into_numbered_volumes() throws ExtractionException, WrongPassException, CorruptArchiveException, IOException {
+        //GIVEN
+        File archiveFile = new File(classLoader.getResource("test_data/single_file_inside.zip.001").getFile());
+
+        //WHEN
+        boolean extractionResult = this.handler.extractMultipartArchive(archiveFile, archivePassword, tempDir.toAbsolutePath().toString());
+
+        //THEN
+        assertTrue(extractionResult, "Should return true");
+        List<String> lines = FileUtils.readLines(tempDir.resolve("zip_single_file.txt").toFile(), Charset.defaultCharset());
+        assertEquals(List.of("zip_single_file_content"), lines, "Should contain predefined content");
+        assertThrows(WrongPassException.class, () -> this.handler.testMultipartArchive(archiveFile, wrongArchivePassword));
+    }
+
+    @Test
+    void extractAll_pw_prot_7z_encr_file_list_single_file_inside() throws ExtractionException, WrongPassException, CorruptArchiveException, IOException {
         this.doTestWithFilesInside("7z", 1, FileType.SINGLE_ENCR_LIST);
     }
 
     @Test
-    void extractAll_pw_prot_rar_single_file_inside() throws ExtractionException, WrongPassException, IOException {
+    void extractAll_pw_prot_rar_single_file_inside() throws ExtractionException, WrongPassException, CorruptArchiveException, IOException {
         this.doTestWithFilesInside("rar", 1, FileType.SINGLE);
     }
 
     @Test
-    void extractAll_pw_prot_7z_multiple_files_inside() throws ExtractionException, WrongPassException, IOException {
+    void extractAll_pw_prot_7z_multiple_files_inside() throws ExtractionException, WrongPassException, CorruptArchiveException, IOException {
         this.doTestWithMultipleFilesInside("7z");
     }
 
     @Test
-    void extractAll_pw_prot_zip_multiple_files_inside() throws ExtractionException, WrongPassException, IOException {
+    void extractAll_interrupted_7z_resumed_with_missing_entries_only() throws Exception {
+        //GIVEN
+        File archiveFile = new File(classLoader.getResource("test_data/multiple_files_inside.7z").getFile());
+        String outputDir = tempDir.toAbsolutePath().toString();
+        this.handler.extractArchive(archiveFile, archivePassword, outputDir);
+        assertFalse(tempDir.resolve(ExtractionJournal.DIRECTORY).toFile().exists(), "Journal should be removed once done");
+        //the run crashed before the second file and its journal line were written
+        ExtractionJournal.open(new ExtractionContext(archiveFile, outputDir)).close();
+        File kept = tempDir.resolve("7z_file_1.txt").toFile();
+        File missing = tempDir.resolve("7z_file_2.txt").toFile();
+        assertTrue(missing.delete());
+        assertTrue(kept.setLastModified(0));
+
+        //WHEN
+        boolean extractionResult = this.handler.extractArchive(archiveFile, archivePassword, outputDir);
+
+        //THEN
+        assertTrue(extractionResult);
+        assertEquals("7z_file_2_content", FileUtils.readLines(missing, Charset.defaultCharset()).get(0));
+        assertEquals(0, kept.lastModified(), "Entry matching size and CRC should not be extracted again");
+        assertFalse(tempDir.resolve(ExtractionJournal.DIRECTORY).toFile().exists());
+    }
+
+    @Test
+    void extractAll_with_entry_filter_only_selected_entries_extracted() throws Exception {
+        //GIVEN
+        File archiveFile = new File(classLoader.getResource("test_data/multiple_files_inside.7z").getFile());
+        ExtractionSettings settings = new ExtractionSettings(Duration.ZERO,
+                new EntryFilter(List.of("*_2.txt"), List.of(), 0, -1, List.of()));
+
+        //WHEN
+        boolean extractionResult = this.handler.extractArchive(archiveFile, archivePassword, tempDir.toAbsolutePath().toString(), settings);
+
+        //THEN
+        assertTrue(extractionResult);
+        assertTrue(tempDir.resolve("7z_file_2.txt").toFile().exists());
+        assertFalse(tempDir.resolve("7z_file_1.txt").toFile().exists(), "Entry not selected should not be extracted");
+    }
+
+    @Test
+    void extractAll_pw_prot_zip_multiple_files_inside() throws ExtractionException, WrongPassException, CorruptArchiveException, IOException {
         this.doTestWithMultipleFilesInside("zip");
     }
 
     @Test
-    void extractAll_pw_prot_rar_multiple_files_inside() throws ExtractionException, WrongPassException, IOException {
+    void extractAll_pw_prot_rar_multiple_files_inside() throws ExtractionException, WrongPassException, CorruptArchiveException, IOException {
         this.doTestWithMultipleFilesInside("rar");
     }
 
@@ -210,4 +287,209 @@ class SevenZipBindingsHandlerTest {
     void extractAll_pw_prot_rar_multiple_files_inside_wrong_pass() {
         doTestWrongPassException("rar", FileType.MULTIPLE);
     }
-}
\ No newline at end of file
+
+    private void doTestWrongPassLeavesNoOutput(String format, FileType type) {
+        //GIVEN
+        File archiveFile = new File(classLoader.getResource(String.format("test_data/" + getArchiveMask(type, format), format)).getFile());
+        File outputDir = tempDir.resolve("not_created").toFile();
+
+        //WHEN
+        assertThrows(WrongPassException.class, () -> this.handler.extractArchive(archiveFile, wrongArchivePassword, outputDir.getAbsolutePath()));
+
+        //THEN
+        assertFalse(outputDir.exists(), "Output directory should not be touched before the password is confirmed");
+    }
+
+    @Test()
+    void extractAll_pw_prot_zip_multiple_files_inside_wrong_pass_no_output() {
+        doTestWrongPassLeavesNoOutput("zip", FileType.MULTIPLE);
+    }
+
+    @Test()
+    void extractAll_pw_prot_7z_multiple_files_inside_wrong_pass_no_output() {
+        doTestWrongPassLeavesNoOutput("7z", FileType.MULTIPLE);
+    }
+
+    @Test()
+    void extractAll_pw_prot_rar_multiple_files_inside_wrong_pass_no_output() {
+        doTestWrongPassLeavesNoOutput("rar", FileType.MULTIPLE);
+    }
+
+    @Test()
+    void testOnly_pw_prot_rar_multiple_files_inside() throws ExtractionException, WrongPassException, CorruptArchiveException, IOException {
+        //GIVEN
+        File archiveFile = new File(classLoader.getResource("test_data/multiple_files_inside.rar").getFile());
+
+        //WHEN
+        boolean testResult = this.handler.testArchive(archiveFile, archivePassword);
+
+        //THEN
+        assertTrue(testResult, "Should return true");
+        assertThrows(WrongPassException.class, () -> this.handler.testArchive(archiveFile, wrongArchivePassword));
+        assertEquals(0, Files.list(tempDir).count(), "Nothing should be extracted when only testing");
+    }
+
+    private void doTestSessionSwapsPasswords(String format, FileType type, boolean reopening) throws Exception {
+        //GIVEN
+        File archiveFile = new File(classLoader.getResource(String.format("test_data/" + getArchiveMask(type, format), format)).getFile());
+
+        //WHEN
+        try (AttemptSession session = (AttemptSession) this.handler.openSession(archiveFile, type == FileType.MULTIPART_SINGLE)) {
+
+            //THEN
+            assertEquals(reopening, session.isReopeningForEveryAttempt());
+            assertThrows(WrongPassException.class, () -> session.tryPassword(wrongArchivePassword));
+            assertTrue(session.tryPassword(archivePassword), "Should accept the right password after a wrong one");
+            assertThrows(WrongPassException.class, () -> session.tryPassword(wrongArchivePassword));
+        }
+        assertEquals(0, Files.list(tempDir).count(), "Nothing should be extracted when only testing");
+    }
+
+    @Test()
+    void session_pw_prot_7z_multiple_files_inside() throws Exception {
+        doTestSessionSwapsPasswords("7z", FileType.MULTIPLE, false);
+    }
+
+    @Test()
+    void session_pw_prot_zip_single_file_inside() throws Exception {
+        doTestSessionSwapsPasswords("zip", FileType.SINGLE, false);
+    }
+
+    @Test()
+    void session_pw_prot_rar_multipart_single_file_inside() throws Exception {
+        doTestSessionSwapsPasswords("rar", FileType.MULTIPART_SINGLE, false);
+    }
+
+    @Test()
+    void session_pw_prot_7z_multipart_single_file_inside() throws Exception {
+        doTestSessionSwapsPasswords("7z", FileType.MULTIPART_SINGLE, false);
+    }
+
+    @Test()
+    void session_pw_prot_7z_encr_file_list_single_file_inside() throws Exception {
+        doTestSessionSwapsPasswords("7z", FileType.SINGLE_ENCR_LIST, true);
+    }
+
+    @Test()
+    void attemptPassword_pw_prot_7z_multiple_files_inside() {
+        //GIVEN
+        File archiveFile = new File(classLoader.getResource("test_data/multiple_files_inside.7z").getFile());
+
+        //WHEN
+        AttemptResult wrong = this.handler.attemptPassword(archiveFile, wrongArchivePassword, false);
+        AttemptResult right = this.handler.attemptPassword(archiveFile, archivePassword, false);
+        this.handler.release(archiveFile);
+
+        //THEN
+        assertEquals(AttemptResult.WRONG_PASSWORD, wrong);
+        assertEquals(AttemptResult.OK, right);
+    }
+
+    @Test()
+    void attemptPassword_missing_archive() {
+        //WHEN
+        AttemptResult result = this.handler.attemptPassword(tempDir.resolve("missing.7z").toFile(), archivePassword, false);
+
+        //THEN
+        assertEquals(AttemptResult.CORRUPT, result);
+    }
+
+    @Test()
+    void extractAll_truncated_7z_reported_corrupt_not_wrong_pass() throws IOException {
+        //GIVEN
+        byte[] archive = Files.readAllBytes(new File(classLoader.getResource("test_data/multiple_files_inside.7z").getFile()).toPath());
+        File archiveFile = Files.write(tempDir.resolve("truncated.7z"), java.util.Arrays.copyOf(archive, 64)).toFile();
+        String outputDir = tempDir.resolve("out").toString();
+
+        //WHEN
+        CorruptArchiveException e = assertThrows(CorruptArchiveException.class,
+                () -> this.handler.extractArchive(archiveFile, wrongArchivePassword, outputDir));
+        AttemptResult result = this.handler.attemptPassword(archiveFile, archivePassword, false);
+
+        //THEN
+        assertTrue(e.getMessage().contains("as " + ArchiveFormat.SEVEN_ZIP), e.getMessage());
+        assertEquals(AttemptResult.CORRUPT, result);
+    }
+
+    @Test()
+    void process_pw_prot_7z_multiple_files_inside_wrong_pass_recognized_by_signal() {
+        //GIVEN
+        File archiveFile = new File(classLoader.getResource("test_data/multiple_files_inside.7z").getFile());
+        ExtractionContext context = new ExtractionContext(archiveFile, null);
+
+        //WHEN
+        WrongPassException e = assertThrows(WrongPassException.class, () -> this.handler.process(context, wrongArchivePassword, false));
+
+        //THEN
+        assertSame(WrongPassException.signal(), e);
+        assertEquals(0, e.getStackTrace().length, "Wrong passwords should not cost a stack trace");
+    }
+
+    @Test()
+    void extractAll_pw_prot_7z_multipart_with_write_behind() throws ExtractionException, WrongPassException, CorruptArchiveException, IOException {
+        ReflectionTestUtils.setField(this.handler, "writeBehindBuffers", 2);
+        this.handler.bufferPool.setBufferSize(256);
+        try {
+            this.doTestWithFilesInside("7z", 1, FileType.MULTIPART_SINGLE);
+            this.doTestWithMultipleFilesInside("rar");
+        } finally {
+            this.handler.shutdown();
+        }
+    }
+
+    @Test()
+    void extractAll_pw_prot_multipart_with_prefetch() throws ExtractionException, WrongPassException, CorruptArchiveException, IOException, InterruptedException {
+        VolumePrefetcher prefetcher = new VolumePrefetcher(64L * 1024 * 1024, 2);
+        ReflectionTestUtils.setField(this.handler, "prefetcher", prefetcher);
+        try {
+            this.doTestWithFilesInside("rar", 1, FileType.MULTIPART_SINGLE);
+            this.doTestWithFilesInside("7z", 1, FileType.MULTIPART_SINGLE);
+            //reading through the first volumes warmed the second ones
+            long deadline = System.currentTimeMillis() + 5000;
+            while (prefetcher.prefetchedBytes() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(prefetcher.prefetchedBytes() > 0, "The volumes after the first ones should have been prefetched");
+        } finally {
+            this.handler.shutdown();
+        }
+    }
+
+    private void doTestVolumeArrivingLate(String first, String second) throws Exception {
+        //GIVEN
+        Path inDir = Files.createDirectories(tempDir.resolve("in"));
+        Path outDir = tempDir.resolve("out");
+        Files.copy(Path.of(classLoader.getResource("test_data/" + first).toURI()), inDir.resolve(first));
+        ReflectionTestUtils.setField(this.handler, "volumeQuietSeconds", 1L);
+        ExtractionSettings settings = new ExtractionSettings(Duration.ofSeconds(20), EntryFilter.ALL);
+        Thread transfer = new Thread(() -> {
+            try {
+                Thread.sleep(500);
+                Files.copy(Path.of(classLoader.getResource("test_data/" + second).toURI()), inDir.resolve(second));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        transfer.start();
+
+        //WHEN
+        boolean extractionResult = this.handler.extractMultipartArchive(inDir.resolve(first).toFile(), archivePassword, outDir.toString(), settings);
+        transfer.join();
+
+        //THEN
+        assertTrue(extractionResult, "Should return true");
+        var referenceFile = new File(classLoader.getResource("test_data/multipart_single_file.txt").getFile());
+        File extractedFile = outDir.toFile().listFiles()[0];
+        assertTrue(areOfSameContent(extractedFile, referenceFile), "Archived long txt file should preserve its content");
+    }
+
+    @Test()
+    void extractAll_pw_prot_7z_multipart_second_volume_arriving_late() throws Exception {
+        doTestVolumeArrivingLate("single_file_inside.7z.001", "single_file_inside.7z.002");
+    }
+
+    @Test()
+    void extractAll_pw_prot_rar_multipart_second_volume_arriving_late() throws Exception {
+        doTestVolumeArrivingLate("single_file_inside.part01.rar", "single_file_inside.part02.rar");
+    }
+}
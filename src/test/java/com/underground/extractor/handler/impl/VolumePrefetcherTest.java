@@ -0,0 +1,66 @@
+package com.underground.extractor.handler.impl;
+
+import net.sf.sevenzipjbinding.IInStream;
+import net.sf.sevenzipjbinding.ISeekableStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VolumePrefetcherTest {
+
+    private static final int VOLUME_SIZE = 100_000;
+
+    @TempDir
+    private Path tempDir;
+    private final VolumePrefetcher prefetcher = new VolumePrefetcher(60_000, 2);
+
+    @AfterEach
+    void tearDown() {
+        prefetcher.shutdown();
+    }
+
+    @Test
+    void givenVolumeReadThrough_whenPastTrigger_thenNextVolumeWarmedWithinBudget() throws Exception {
+        //GIVEN
+        for (String name : new String[]{"archive.7z.001", "archive.7z.002", "archive.7z.003", "archive.7z.004"}) {
+            Files.write(tempDir.resolve(name), new byte[VOLUME_SIZE]);
+        }
+        String first = tempDir.resolve("archive.7z.001").toString();
+
+        try (InputFile inputFile = new InputFile(first, true)) {
+            IInStream stream = prefetcher.track(first, inputFile.size(), inputFile.newStream());
+
+            //WHEN
+            //the headers are read like 7-Zip does while opening
+            stream.read(new byte[32]);
+            stream.seek(-1000, ISeekableStream.SEEK_END);
+            stream.read(new byte[1000]);
+            Thread.sleep(200);
+            long afterOpening = prefetcher.prefetchedBytes();
+            //then the volume is read through
+            stream.seek(32, ISeekableStream.SEEK_SET);
+            byte[] chunk = new byte[8192];
+            while (stream.read(chunk) > 0) {
+                //read until the end
+            }
+            awaitPrefetched(60_000, 5000);
+
+            //THEN
+            assertEquals(0, afterOpening, "Reading the headers should not warm anything");
+            //the second volume as far as the budget allows, which leaves nothing for the third
+            assertEquals(60_000, prefetcher.prefetchedBytes());
+        }
+    }
+
+    private void awaitPrefetched(long bytes, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (prefetcher.prefetchedBytes() < bytes && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
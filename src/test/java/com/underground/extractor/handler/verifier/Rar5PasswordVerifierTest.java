@@ -0,0 +1,58 @@
+package com.underground.extractor.handler.verifier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Rar5PasswordVerifierTest {
+    private ClassLoader classLoader;
+    private DerivedKeyCache keyCache;
+    private String archivePassword;
+
+    @BeforeEach
+    void setUp() {
+        this.classLoader = getClass().getClassLoader();
+        this.keyCache = new DerivedKeyCache(16, 1024 * 1024);
+        this.archivePassword = "12345";
+    }
+
+    private PasswordVerifier verifierFor(String archive) throws IOException {
+        File archiveFile = new File(classLoader.getResource("test_data/" + archive).getFile());
+        return Rar5PasswordVerifier.of(archiveFile, keyCache);
+    }
+
+    @Test
+    void rar5_correctPasswordAccepted_wrongPasswordRejected() throws IOException {
+        //GIVEN
+        PasswordVerifier verifier = verifierFor("multiple_files_inside.rar");
+
+        //THEN
+        assertNotSame(PasswordVerifier.ACCEPT_ALL, verifier, "RAR5 archive should carry a password check value");
+        assertTrue(verifier.mayMatch(archivePassword), "Correct password must never be rejected");
+        assertFalse(verifier.mayMatch("I am a wrong password"));
+        assertFalse(verifier.mayMatch("1234"));
+    }
+
+    @Test
+    void rar5_multipart_derivedKeysCachedPerPasswordAndSalt() throws IOException {
+        //GIVEN
+        PasswordVerifier verifier = verifierFor("single_file_inside.part01.rar");
+
+        //WHEN
+        assertTrue(verifier.mayMatch(archivePassword));
+        assertTrue(verifier.mayMatch(archivePassword));
+        assertFalse(verifier.mayMatch("I am a wrong password"));
+
+        //THEN
+        assertEquals(2, keyCache.size(), "Repeated candidate should be served from the cache");
+    }
+
+    @Test
+    void notRar5_acceptsEverything() throws IOException {
+        assertSame(PasswordVerifier.ACCEPT_ALL, verifierFor("single_file_inside.7z"));
+    }
+}
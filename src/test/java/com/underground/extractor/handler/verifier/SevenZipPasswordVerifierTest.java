@@ -0,0 +1,82 @@
+package com.underground.extractor.handler.verifier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SevenZipPasswordVerifierTest {
+    private ClassLoader classLoader;
+    private DerivedKeyCache keyCache;
+    private String archivePassword;
+
+    @BeforeEach
+    void setUp() {
+        this.classLoader = getClass().getClassLoader();
+        this.keyCache = new DerivedKeyCache(16, 1024 * 1024);
+        this.archivePassword = "12345";
+    }
+
+    private PasswordVerifier verifierFor(String archive) throws IOException {
+        File archiveFile = new File(classLoader.getResource("test_data/" + archive).getFile());
+        return SevenZipPasswordVerifier.of(archiveFile, keyCache);
+    }
+
+    private long countAcceptedWrongPasswords(PasswordVerifier verifier) {
+        return IntStream.range(0, 10)
+                .mapToObj(i -> "wrong" + i)
+                .filter(verifier::mayMatch)
+                .count();
+    }
+
+    @Test
+    void encryptedHeader_correctPasswordAccepted_wrongPasswordsRejected() throws IOException {
+        //GIVEN
+        PasswordVerifier verifier = verifierFor("encr_file_list-single_file.7z");
+
+        //THEN
+        assertNotSame(PasswordVerifier.ACCEPT_ALL, verifier);
+        assertTrue(verifier.mayMatch(archivePassword), "Correct password must never be rejected");
+        assertEquals(0, countAcceptedWrongPasswords(verifier));
+    }
+
+    @Test
+    void encryptedData_correctPasswordAccepted_wrongPasswordsRejected() throws IOException {
+        //GIVEN
+        PasswordVerifier verifier = verifierFor("single_file_inside.7z");
+
+        //THEN
+        assertNotSame(PasswordVerifier.ACCEPT_ALL, verifier);
+        assertTrue(verifier.mayMatch(archivePassword), "Correct password must never be rejected");
+        assertTrue(countAcceptedWrongPasswords(verifier) <= 1);
+    }
+
+    @Test
+    void splitArchive_headerInLastVolumeFound() throws IOException {
+        //GIVEN
+        PasswordVerifier verifier = verifierFor("single_file_inside.7z.001");
+
+        //THEN
+        assertNotSame(PasswordVerifier.ACCEPT_ALL, verifier);
+        assertTrue(verifier.mayMatch(archivePassword), "Correct password must never be rejected");
+        assertTrue(countAcceptedWrongPasswords(verifier) <= 1);
+    }
+
+    @Test
+    void derivedKeysSharedBetweenArchivesWithSameSalt() throws IOException {
+        //GIVEN
+        PasswordVerifier first = verifierFor("single_file_inside.7z");
+        PasswordVerifier second = verifierFor("single_file_inside.7z");
+
+        //WHEN
+        first.mayMatch(archivePassword);
+        second.mayMatch(archivePassword);
+
+        //THEN
+        assertEquals(1, keyCache.size());
+    }
+}
@@ -0,0 +1,55 @@
+package com.underground.extractor.handler.verifier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ZipPasswordVerifierTest {
+    private ClassLoader classLoader;
+    private String archivePassword;
+
+    @BeforeEach
+    void setUp() {
+        this.classLoader = getClass().getClassLoader();
+        this.archivePassword = "12345";
+    }
+
+    private long countAcceptedWrongPasswords(PasswordVerifier verifier, int candidates) {
+        return IntStream.range(0, candidates)
+                .mapToObj(i -> "wrong" + i)
+                .filter(verifier::mayMatch)
+                .count();
+    }
+
+    @Test
+    void aesZip_correctPasswordAccepted_wrongPasswordsRejected() throws IOException {
+        //GIVEN
+        File archiveFile = new File(classLoader.getResource("test_data/multiple_files_inside.zip").getFile());
+
+        //WHEN
+        PasswordVerifier verifier = ZipPasswordVerifier.of(archiveFile);
+
+        //THEN
+        assertTrue(verifier.mayMatch(archivePassword), "Correct password must never be rejected");
+        assertTrue(countAcceptedWrongPasswords(verifier, 200) <= 1, "2 byte check value should reject wrong passwords");
+    }
+
+    @Test
+    void zipCrypto_correctPasswordAccepted_wrongPasswordsRejected() throws IOException {
+        //GIVEN
+        File archiveFile = new File(classLoader.getResource("test_data/zipcrypto_single_file_inside.zip").getFile());
+
+        //WHEN
+        PasswordVerifier verifier = ZipPasswordVerifier.of(archiveFile);
+
+        //THEN
+        assertTrue(verifier.mayMatch(archivePassword), "Correct password must never be rejected");
+        //the check byte lets through about 1 of 256 wrong passwords
+        assertTrue(countAcceptedWrongPasswords(verifier, 10000) < 100, "Check byte should reject most wrong passwords");
+    }
+}
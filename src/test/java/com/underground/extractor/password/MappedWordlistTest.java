@@ -0,0 +1,69 @@
+package com.underground.extractor.password;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedWordlistTest {
+
+    @TempDir
+    private Path dir;
+
+    @Test
+    void givenWordlistWithDuplicates_whenIterated_thenEveryDistinctLineOnceInOrder() throws Exception {
+        //GIVEN
+        Path file = Files.writeString(dir.resolve("passwords.txt"), "12345\r\nsecret\n\n12345\nünïcode\nsecret\nlast", StandardCharsets.UTF_8);
+
+        //WHEN
+        List<String> candidates = new ArrayList<>();
+        try (MappedWordlist wordlist = MappedWordlist.open(file)) {
+            wordlist.forEach(candidates::add);
+            //every iteration starts over
+            assertEquals(5, countOf(wordlist.split(1).get(0)));
+        }
+        try (MappedWordlist wordlist = MappedWordlist.open(file, 0)) {
+            assertEquals(7, countOf(wordlist), "Nothing remembered, nothing skipped");
+        }
+
+        //THEN
+        assertEquals(List.of("12345", "secret", "", "ünïcode", "last"), candidates);
+    }
+
+    @Test
+    void givenSmallWindowsAndChunks_whenSplit_thenPartsTogetherHandOutEveryCandidateOnce() throws Exception {
+        //GIVEN
+        List<String> lines = IntStream.range(0, 5000).mapToObj(i -> "password" + (i % 4000)).toList();
+        Path file = Files.write(dir.resolve("passwords.txt"), lines);
+
+        //WHEN
+        Queue<String> candidates = new ConcurrentLinkedQueue<>();
+        try (MappedWordlist wordlist = new MappedWordlist(file, 1000, 100, MappedWordlist.DEFAULT_DEDUP_ENTRIES)) {
+            List<Thread> workers = wordlist.split(3).stream()
+                    .map(part -> new Thread(() -> part.forEach(candidates::add))).toList();
+            workers.forEach(Thread::start);
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        }
+
+        //THEN
+        assertEquals(4000, candidates.size());
+        assertEquals(new HashSet<>(lines), new HashSet<>(candidates));
+    }
+
+    private static long countOf(Iterable<String> part) {
+        long count = 0;
+        for (String ignored : part) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,49 @@
+package com.underground.extractor.password;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MaskSourceTest {
+
+    @Test
+    void givenMask_whenCandidatesComputed_thenLastPositionChangesFastest() {
+        //GIVEN
+        MaskSource mask = new MaskSource("?u?l?l?d?d?d?d");
+
+        //THEN
+        assertEquals(26L * 26 * 26 * 10_000, mask.keyspace());
+        assertEquals("Aaa0000", mask.candidate(0));
+        assertEquals("Aaa0001", mask.candidate(1));
+        assertEquals("Aab0000", mask.candidate(10_000));
+        assertEquals("Zzz9999", mask.candidate(mask.keyspace() - 1));
+        assertEquals("x?1", new MaskSource("x???d").candidate(1));
+        assertEquals(95, new MaskSource("?a").keyspace());
+        assertThrows(IllegalArgumentException.class, () -> new MaskSource("?x"));
+        assertThrows(IllegalArgumentException.class, () -> new MaskSource("?d?"));
+        assertThrows(IllegalArgumentException.class, () -> new MaskSource("?a".repeat(12)));
+    }
+
+    @Test
+    void givenOffsetAndCount_whenSplit_thenPartsCoverTheRangeInOrder() {
+        //GIVEN
+        MaskSource mask = new MaskSource("?d?d", 5, 23);
+
+        //WHEN
+        List<String> candidates = new ArrayList<>();
+        mask.forEach(candidates::add);
+        List<String> split = new ArrayList<>();
+        List<Iterable<String>> parts = mask.split(4);
+        parts.forEach(part -> part.forEach(split::add));
+
+        //THEN
+        assertEquals(23, candidates.size());
+        assertEquals("05", candidates.get(0));
+        assertEquals("27", candidates.get(22));
+        assertEquals(candidates, split);
+        assertEquals("11", parts.get(1).iterator().next());
+    }
+}
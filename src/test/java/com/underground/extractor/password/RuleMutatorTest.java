@@ -0,0 +1,69 @@
+package com.underground.extractor.password;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RuleMutatorTest {
+
+    @Test
+    void givenRules_whenApplied_thenHashcatSemantics() {
+        assertEquals("Secret2024", Rule.parse("c $2$0$2$4").apply("sECRET"));
+        assertEquals("p@$$w0rd", Rule.parse("sa@ ss$ so0").apply("password"));
+        assertEquals("!PASS", Rule.parse("u ^!").apply("pass"));
+        assertEquals("pAsS", Rule.parse("T1T3").apply("pass"));
+        assertEquals("drow", Rule.parse("] r").apply("words"));
+        assertEquals("abab", Rule.parse("'2 d").apply("abcdef"));
+        assertThrows(IllegalArgumentException.class, () -> Rule.parse("$"));
+        assertThrows(IllegalArgumentException.class, () -> Rule.parse("X"));
+    }
+
+    @Test
+    void givenTurkishLocale_whenCaseChanged_thenLocaleIndependent() {
+        //GIVEN
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr"));
+        try {
+            //WHEN
+            String upper = Rule.parse("u").apply("insider");
+            String capitalized = Rule.parse("c").apply("INSIDE");
+
+            //THEN
+            assertEquals("INSIDER", upper);
+            assertEquals("Inside", capitalized);
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    void givenBaseWords_whenMutated_thenCandidatesByWordWithoutDuplicates() {
+        //GIVEN
+        List<Rule> rules = RuleMutator.parse(List.of("# comment", ":", "l", "$1", "", "c"));
+        RuleMutator mutator = new RuleMutator(PasswordSource.of(List.of("abc", "Abc")), rules);
+
+        //WHEN
+        List<String> candidates = new ArrayList<>();
+        mutator.forEach(candidates::add);
+        List<String> split = new ArrayList<>();
+        mutator.split(2).forEach(part -> part.forEach(split::add));
+
+        //THEN
+        assertEquals(List.of("abc", "abc1", "Abc", "Abc1"), candidates);
+        assertEquals(new HashSet<>(candidates), new HashSet<>(split));
+        assertEquals(candidates.size(), split.size());
+    }
+
+    @Test
+    void givenBuiltinRules_whenLoaded_thenAllParsed() throws Exception {
+        List<Rule> rules = RuleMutator.load(RuleMutator.BUILTIN);
+
+        assertTrue(rules.size() > 200);
+        assertTrue(rules.stream().anyMatch(rule -> rule.apply("summer").equals("Summer2024")));
+    }
+}
@@ -0,0 +1,95 @@
+package com.underground.extractor.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArchiveLeasesTest {
+
+    @TempDir
+    private Path dir;
+
+    private ExtractorService.Archive archive(String name) throws Exception {
+        File file = Files.write(dir.resolve(name), new byte[10]).toFile();
+        return ExtractorService.Archive.single(file);
+    }
+
+    @Test
+    void givenTwoHosts_whenBothClaim_thenOnlyOneProcessesAndDoneStaysDone() throws Exception {
+        //GIVEN
+        ExtractorService.Archive archive = archive("a.7z");
+        try (var first = new ArchiveLeases(dir, Duration.ofMinutes(1), "host1");
+             var second = new ArchiveLeases(dir, Duration.ofMinutes(1), "host2")) {
+
+            //WHEN
+            boolean claimedByFirst = first.claim(archive);
+            boolean claimedBySecond = second.claim(archive);
+            first.complete(archive, ExtractionResult.Status.EXTRACTED);
+
+            //THEN
+            assertTrue(claimedByFirst);
+            assertFalse(claimedBySecond);
+            assertFalse(second.claim(archive), "Done archives are not processed again");
+            Files.setLastModifiedTime(archive.file().toPath(), FileTime.fromMillis(0));
+            assertTrue(second.claim(archive), "A changed archive is new");
+        }
+    }
+
+    @Test
+    void givenLeaseOfCrashedHost_whenExpired_thenTakenOver() throws Exception {
+        //GIVEN
+        ExtractorService.Archive archive = archive("b.zip");
+        try (var crashed = new ArchiveLeases(dir, Duration.ofMinutes(1), "crashed");
+             var other = new ArchiveLeases(dir, Duration.ofMinutes(1), "other")) {
+            assertTrue(crashed.claim(archive));
+            Path lease;
+            try (var files = Files.list(dir.resolve(ArchiveLeases.DIRECTORY))) {
+                lease = files.filter(path -> path.toString().endsWith(".lease")).findFirst().orElseThrow();
+            }
+            assertFalse(other.claim(archive), "The lease is still valid");
+
+            //WHEN
+            Files.setLastModifiedTime(lease, FileTime.fromMillis(System.currentTimeMillis() - 120_000));
+            boolean claimed = other.claim(archive);
+
+            //THEN
+            assertTrue(claimed);
+            assertEquals("other", Files.readString(lease));
+            assertTrue(ArchiveLeases.isLeaseFile(dir.relativize(lease)));
+            assertTrue(ExtractorService.index(dir, 5).unsupported().isEmpty());
+        }
+    }
+
+    @Test
+    void givenLeaseTakenOverAfterExpiry_whenConfirmed_thenLostAndOtherLeaseKept() throws Exception {
+        //GIVEN
+        ExtractorService.Archive archive = archive("c.rar");
+        try (var slow = new ArchiveLeases(dir, Duration.ofMinutes(1), "slow");
+             var other = new ArchiveLeases(dir, Duration.ofMinutes(1), "other")) {
+            assertTrue(slow.claim(archive));
+            Path lease;
+            try (var files = Files.list(dir.resolve(ArchiveLeases.DIRECTORY))) {
+                lease = files.filter(path -> path.toString().endsWith(".lease")).findFirst().orElseThrow();
+            }
+            Files.setLastModifiedTime(lease, FileTime.fromMillis(System.currentTimeMillis() - 120_000));
+            assertTrue(other.claim(archive));
+
+            //WHEN
+            boolean confirmed = slow.confirm(archive);
+            slow.release(archive);
+
+            //THEN
+            assertFalse(confirmed);
+            assertFalse(slow.holds(archive));
+            assertTrue(other.confirm(archive));
+            assertEquals("other", Files.readString(lease), "Releasing a lost lease should leave the new owner's lease alone");
+        }
+    }
+}
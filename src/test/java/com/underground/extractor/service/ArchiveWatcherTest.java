@@ -0,0 +1,107 @@
+package com.underground.extractor.service;
+
+import com.underground.extractor.handler.IArchiveExtractor;
+import com.underground.extractor.handler.WrongPassException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ArchiveWatcherTest {
+
+    @Mock
+    IArchiveExtractor archiveExtractor;
+    @TempDir
+    private Path inputDir;
+    @TempDir
+    private Path outputDir;
+    private Path passwordsFile;
+    private Thread watcherThread;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        passwordsFile = inputDir.resolve("passwords.lst");
+        Files.write(passwordsFile, List.of("12345"));
+        ArchiveWatcher watcher = new ArchiveWatcher(new ExtractorService(archiveExtractor));
+        watcherThread = new Thread(() -> {
+            try {
+                watcher.watch(inputDir.toString(), outputDir.toString(), passwordsFile.toString(), false,
+                        ExtractionOptions.defaults(), Duration.ofMillis(200));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        watcherThread.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        watcherThread.interrupt();
+        watcherThread.join(5000);
+    }
+
+    @Test
+    void givenArchiveCopiedIn_whenSettled_thenExtractedOnce() throws Exception {
+        //GIVEN
+        File archive = inputDir.resolve("file.zip").toFile();
+        when(archiveExtractor.extractArchive(eq(archive), eq("12345"), anyString(), any())).thenReturn(true);
+
+        //WHEN
+        Files.write(archive.toPath(), new byte[10]);
+
+        //THEN
+        verify(archiveExtractor, timeout(5000)).extractArchive(eq(archive), eq("12345"), anyString(), any());
+        Thread.sleep(600);
+        verify(archiveExtractor, times(1)).extractArchive(eq(archive), eq("12345"), anyString(), any());
+    }
+
+    @Test
+    void givenMultipartArchive_whenOnlyFirstFullVolumeArrived_thenWaitsForTheLastOne() throws Exception {
+        //GIVEN
+        File firstVolume = inputDir.resolve("file.7z.001").toFile();
+        when(archiveExtractor.extractMultipartArchive(eq(firstVolume), eq("12345"), anyString(), any())).thenReturn(true);
+
+        //WHEN
+        Files.write(firstVolume.toPath(), new byte[100]);
+        Thread.sleep(800);
+        verify(archiveExtractor, never()).extractMultipartArchive(any(), anyString(), anyString(), any());
+        Files.write(inputDir.resolve("file.7z.002"), new byte[40]);
+
+        //THEN
+        verify(archiveExtractor, timeout(5000)).extractMultipartArchive(eq(firstVolume), eq("12345"), anyString(), any());
+    }
+
+    @Test
+    void givenNoPasswordFitted_whenPasswordFileChanges_thenTriedAgain() throws Exception {
+        //GIVEN
+        File archive = inputDir.resolve("file.zip").toFile();
+        when(archiveExtractor.extractArchive(eq(archive), eq("12345"), anyString(), any())).thenThrow(new WrongPassException());
+        when(archiveExtractor.extractArchive(eq(archive), eq("secret"), anyString(), any())).thenReturn(true);
+        Files.write(archive.toPath(), new byte[10]);
+        verify(archiveExtractor, timeout(5000)).extractArchive(eq(archive), eq("12345"), anyString(), any());
+        Thread.sleep(600);
+        verify(archiveExtractor, times(1)).extractArchive(eq(archive), eq("12345"), anyString(), any());
+
+        //WHEN
+        Files.write(passwordsFile, List.of("secret"));
+        Files.setLastModifiedTime(passwordsFile, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+
+        //THEN
+        verify(archiveExtractor, timeout(5000)).extractArchive(eq(archive), eq("secret"), anyString(), any());
+    }
+}
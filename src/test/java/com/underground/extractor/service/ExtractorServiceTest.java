@@ -1,5 +1,6 @@
 package com.underground.extractor.service;
 
+import com.underground.extractor.handler.ExtractionSettings;
 import com.underground.extractor.handler.IArchiveExtractor;
 import com.underground.extractor.handler.WrongPassException;
 import org.apache.commons.io.FileUtils;
@@ -17,10 +18,19 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -77,11 +87,11 @@ class ExtractorServiceTest {
         String inputDir = tempInputDir.toAbsolutePath().toString();
         String outputDir = tempOutputDir.toAbsolutePath().toString();
         String passFilePath = passwordsFile.getAbsolutePath();
-        when(archiveExtractor.extractArchive(fileZip, "12345", outputDir)).thenReturn(true);
-        when(archiveExtractor.extractArchive(file7z, "password", outputDir)).thenReturn(true);
-        when(archiveExtractor.extractArchive(file7z, "12345", outputDir)).thenThrow(WrongPassException.class);
-        when(archiveExtractor.extractArchive(fileRar, "12345", outputDir)).thenReturn(true);
-        when(archiveExtractor.extractMultipartArchive(file7zMultipart, "12345", outputDir)).thenReturn(true);
+        when(archiveExtractor.extractArchive(fileZip, "12345", outputDir, ExtractionSettings.DEFAULT)).thenReturn(true);
+        when(archiveExtractor.extractArchive(file7z, "password", outputDir, ExtractionSettings.DEFAULT)).thenReturn(true);
+        when(archiveExtractor.extractArchive(file7z, "12345", outputDir, ExtractionSettings.DEFAULT)).thenThrow(WrongPassException.class);
+        when(archiveExtractor.extractArchive(fileRar, "12345", outputDir, ExtractionSettings.DEFAULT)).thenReturn(true);
+        when(archiveExtractor.extractMultipartArchive(file7zMultipart, "12345", outputDir, ExtractionSettings.DEFAULT)).thenReturn(true);
 
         //WHEN
         //we run the extractor
@@ -100,6 +110,8 @@ class ExtractorServiceTest {
         Assertions.assertFalse(file7zMultipart.exists());
         //but password file should stay
         Assertions.assertTrue(passwordsFile.exists());
+        //and the default settings are handed over with the call
+        verify(archiveExtractor).extractMultipartArchive(file7zMultipart, "12345", outputDir, ExtractionSettings.DEFAULT);
     }
 
     @Test
@@ -127,12 +139,13 @@ class ExtractorServiceTest {
         String passFilePath = passwordsFile.getAbsolutePath();
 
         //nothing is extracted except for multipart
-        when(archiveExtractor.extractArchive(eq(fileZip), anyString(), eq(outputDir))).thenReturn(false);
-        when(archiveExtractor.extractArchive(eq(file7z), anyString(), eq(outputDir))).thenReturn(false);
-        when(archiveExtractor.extractArchive(eq(fileRar), anyString(), eq(outputDir))).thenReturn(false);
-        when(archiveExtractor.extractMultipartArchive(eq(file7zMultipart1), eq("password"), eq(outputDir))).thenReturn(false);
+        when(archiveExtractor.extractArchive(eq(fileZip), anyString(), eq(outputDir), any())).thenReturn(false);
+        when(archiveExtractor.extractArchive(eq(file7z), anyString(), eq(outputDir), any())).thenReturn(false);
+        when(archiveExtractor.extractArchive(eq(fileRar), anyString(), eq(outputDir), any())).thenReturn(false);
+        //never reached once the first password extracts the archive
+        lenient().when(archiveExtractor.extractMultipartArchive(eq(file7zMultipart1), eq("password"), eq(outputDir), any())).thenReturn(false);
         //only this gets extracted
-        when(archiveExtractor.extractMultipartArchive(file7zMultipart1, "12345", outputDir)).thenReturn(true);
+        when(archiveExtractor.extractMultipartArchive(file7zMultipart1, "12345", outputDir, ExtractionSettings.DEFAULT)).thenReturn(true);
 
         //WHEN
         //we run the extractor
@@ -155,4 +168,161 @@ class ExtractorServiceTest {
         Assertions.assertFalse(file7zMultipart3.exists(), String.format(errorMsg, file7zMultipart3));
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void givenArchivesAndMultipleThreads_whenExtractAll_thenEachArchiveReportedAndRemoved() throws Exception {
+        //GIVEN
+        File passwordsFile = new File(classLoader.getResource("test_data/passwords.txt").getFile());
+
+        File fileZip = tempInputDir.resolve("file.zip").toFile();
+        File file7z = tempInputDir.resolve("file.7z").toFile();
+        File file7zMultipart = tempInputDir.resolve("file.7z.001").toFile();
+        File fileRar = tempInputDir.resolve("file.rar").toFile();
+
+        String inputDir = tempInputDir.toAbsolutePath().toString();
+        String outputDir = tempOutputDir.toAbsolutePath().toString();
+        when(archiveExtractor.extractArchive(fileZip, "12345", outputDir, ExtractionSettings.DEFAULT)).thenReturn(true);
+        when(archiveExtractor.extractArchive(file7z, "12345", outputDir, ExtractionSettings.DEFAULT)).thenThrow(WrongPassException.class);
+        when(archiveExtractor.extractArchive(file7z, "password", outputDir, ExtractionSettings.DEFAULT)).thenReturn(true);
+        when(archiveExtractor.extractArchive(fileRar, "12345", outputDir, ExtractionSettings.DEFAULT)).thenThrow(WrongPassException.class);
+        when(archiveExtractor.extractArchive(fileRar, "password", outputDir, ExtractionSettings.DEFAULT)).thenThrow(WrongPassException.class);
+        when(archiveExtractor.extractMultipartArchive(file7zMultipart, "12345", outputDir, ExtractionSettings.DEFAULT)).thenReturn(true);
+
+        //WHEN
+        List<ExtractionResult> results = this.service.extract(inputDir, outputDir, passwordsFile.getAbsolutePath(), true,
+                ExtractionOptions.builder().threads(4).build());
+
+        //THEN
+        Map<File, ExtractionResult.Status> statuses = results.stream()
+                .collect(Collectors.toMap(ExtractionResult::archive, ExtractionResult::status));
+        Assertions.assertEquals(4, statuses.size());
+        Assertions.assertEquals(ExtractionResult.Status.EXTRACTED, statuses.get(fileZip));
+        Assertions.assertEquals(ExtractionResult.Status.EXTRACTED, statuses.get(file7z));
+        Assertions.assertEquals(ExtractionResult.Status.EXTRACTED, statuses.get(file7zMultipart));
+        Assertions.assertEquals(ExtractionResult.Status.NO_PASSWORD, statuses.get(fileRar));
+        Assertions.assertFalse(fileZip.exists());
+        Assertions.assertFalse(file7z.exists());
+        Assertions.assertFalse(file7zMultipart.exists());
+        Assertions.assertTrue(fileRar.exists(), "Archive without matching password should not be removed");
+    }
+
+    @Test
+    void givenArchiveIndex_whenExtractedAgain_thenExtractedArchivesSkippedAndKnownPasswordTriedFirst() throws Exception {
+        //GIVEN
+        File passwordsFile = new File(classLoader.getResource("test_data/passwords.txt").getFile());
+        File fileZip = Files.writeString(tempInputDir.resolve("file.zip"), "zip").toFile();
+        File file7z = Files.writeString(tempInputDir.resolve("file.7z"), "7z").toFile();
+        File fileRar = Files.writeString(tempInputDir.resolve("file.rar"), "rar").toFile();
+        File file7zMultipart = tempInputDir.resolve("file.7z.001").toFile();
+        String index = tempOutputDir.resolve("index.tsv").toString();
+
+        String inputDir = tempInputDir.toAbsolutePath().toString();
+        String outputDir = tempOutputDir.toAbsolutePath().toString();
+        when(archiveExtractor.extractArchive(fileZip, "12345", outputDir, ExtractionSettings.DEFAULT)).thenReturn(true);
+        when(archiveExtractor.extractArchive(file7z, "12345", outputDir, ExtractionSettings.DEFAULT)).thenThrow(WrongPassException.class);
+        when(archiveExtractor.extractArchive(file7z, "password", outputDir, ExtractionSettings.DEFAULT)).thenReturn(true);
+        when(archiveExtractor.extractArchive(fileRar, "12345", outputDir, ExtractionSettings.DEFAULT)).thenThrow(WrongPassException.class);
+        when(archiveExtractor.extractArchive(fileRar, "password", outputDir, ExtractionSettings.DEFAULT)).thenThrow(WrongPassException.class);
+        when(archiveExtractor.extractMultipartArchive(file7zMultipart, "12345", outputDir, ExtractionSettings.DEFAULT)).thenReturn(true);
+        var options = ExtractionOptions.builder().indexFile(index).build();
+        this.service.extract(inputDir, outputDir, passwordsFile.getAbsolutePath(), false, options);
+
+        //WHEN
+        //the 7z archive is renamed and its extraction failed the first time
+        Files.writeString(Path.of(index), Files.readString(Path.of(index)).replace("EXTRACTED\tfile.7z\t", "FAILED\tfile.7z\t"));
+        File renamed7z = tempInputDir.resolve("renamed.7z").toFile();
+        Assertions.assertTrue(file7z.renameTo(renamed7z));
+        when(archiveExtractor.extractArchive(renamed7z, "password", outputDir, ExtractionSettings.DEFAULT)).thenReturn(true);
+        List<ExtractionResult> results = this.service.extract(inputDir, outputDir, passwordsFile.getAbsolutePath(), false, options);
+
+        //THEN
+        Map<File, ExtractionResult> byArchive = results.stream()
+                .collect(Collectors.toMap(ExtractionResult::archive, result -> result));
+        Assertions.assertEquals(ExtractionResult.Status.SKIPPED, byArchive.get(fileZip).status());
+        Assertions.assertEquals(ExtractionResult.Status.SKIPPED, byArchive.get(file7zMultipart).status());
+        Assertions.assertEquals(ExtractionResult.Status.EXTRACTED, byArchive.get(renamed7z).status());
+        Assertions.assertEquals(1, byArchive.get(renamed7z).passwordsTried(), "The known password should be tried first");
+        Assertions.assertEquals(ExtractionResult.Status.NO_PASSWORD, byArchive.get(fileRar).status());
+    }
+
+    @Test
+    void givenVolumeStillCopyingAndVolumeWait_whenExtractAll_thenExtractionAttemptedAndAllVolumesRemoved() throws Exception {
+        //GIVEN
+        //the second volume of the set isn't there yet
+        File passwordsFile = new File(classLoader.getResource("test_data/passwords.txt").getFile());
+        File file7zMultipart1 = tempInputDir.resolve("file.7z.001").toFile();
+        File file7zMultipart2 = tempInputDir.resolve("file.7z.002").toFile();
+        File file7zMultipart3 = tempInputDir.resolve("file.7z.003").toFile();
+        Assertions.assertTrue(file7zMultipart2.delete());
+
+        String inputDir = tempInputDir.toAbsolutePath().toString();
+        String outputDir = tempOutputDir.toAbsolutePath().toString();
+        //it arrives while the extractor waits for it
+        when(archiveExtractor.extractMultipartArchive(eq(file7zMultipart1), anyString(), eq(outputDir), any())).thenAnswer(invocation -> {
+            Files.createFile(file7zMultipart2.toPath());
+            return true;
+        });
+
+        //WHEN
+        List<ExtractionResult> results = this.service.extract(inputDir, outputDir, passwordsFile.getAbsolutePath(), true,
+                ExtractionOptions.builder().volumeWaitSeconds(30).build());
+
+        //THEN
+        ExtractionResult multipart = results.stream()
+                .filter(result -> result.archive().equals(file7zMultipart1)).findFirst().orElseThrow();
+        Assertions.assertEquals(ExtractionResult.Status.EXTRACTED, multipart.status());
+        verify(archiveExtractor).extractMultipartArchive(eq(file7zMultipart1), anyString(), eq(outputDir),
+                argThat(settings -> settings.volumeWait().equals(Duration.ofSeconds(30))));
+        Assertions.assertFalse(file7zMultipart1.exists());
+        Assertions.assertFalse(file7zMultipart2.exists(), "The volume which arrived late should be removed too");
+        Assertions.assertFalse(file7zMultipart3.exists());
+    }
+
+    @Test
+    void givenVolumeMissingAndNoVolumeWait_whenExtractAll_thenSetFailedWithoutTryingPasswords() throws Exception {
+        //GIVEN
+        File passwordsFile = new File(classLoader.getResource("test_data/passwords.txt").getFile());
+        File file7zMultipart1 = tempInputDir.resolve("file.7z.001").toFile();
+        Assertions.assertTrue(tempInputDir.resolve("file.7z.002").toFile().delete());
+
+        //WHEN
+        List<ExtractionResult> results = this.service.extract(tempInputDir.toString(), tempOutputDir.toString(),
+                passwordsFile.getAbsolutePath(), false, ExtractionOptions.builder().build());
+
+        //THEN
+        ExtractionResult multipart = results.stream()
+                .filter(result -> result.archive().equals(file7zMultipart1)).findFirst().orElseThrow();
+        Assertions.assertEquals(ExtractionResult.Status.FAILED, multipart.status());
+        Assertions.assertEquals(0, multipart.passwordsTried());
+        verify(archiveExtractor, never()).extractMultipartArchive(any(), anyString(), anyString(), any());
+    }
+
+    @Test
+    void givenLeases_whenArchivesNotExtracted_thenLeftForOtherHostsAndExtractedOnesRemoved() throws Exception {
+        //GIVEN
+        File passwordsFile = new File(classLoader.getResource("test_data/passwords.txt").getFile());
+        File fileZip = tempInputDir.resolve("file.zip").toFile();
+        File file7z = tempInputDir.resolve("file.7z").toFile();
+        File fileRar = tempInputDir.resolve("file.rar").toFile();
+        String inputDir = tempInputDir.toAbsolutePath().toString();
+        String outputDir = tempOutputDir.toAbsolutePath().toString();
+        when(archiveExtractor.extractArchive(eq(fileZip), anyString(), eq(outputDir), any())).thenReturn(true);
+        when(archiveExtractor.extractArchive(eq(fileRar), anyString(), eq(outputDir), any())).thenThrow(WrongPassException.class);
+
+        //WHEN
+        List<ExtractionResult> results = this.service.extract(inputDir, outputDir, passwordsFile.getAbsolutePath(), true,
+                ExtractionOptions.builder().leaseSeconds(60).build());
+
+        //THEN
+        Map<File, ExtractionResult.Status> statuses = results.stream()
+                .collect(Collectors.toMap(ExtractionResult::archive, ExtractionResult::status));
+        Assertions.assertEquals(ExtractionResult.Status.EXTRACTED, statuses.get(fileZip));
+        Assertions.assertEquals(ExtractionResult.Status.NO_PASSWORD, statuses.get(fileRar));
+        Assertions.assertEquals(ExtractionResult.Status.FAILED, statuses.get(file7z));
+        Assertions.assertFalse(fileZip.exists());
+        try (var otherHost = new ArchiveLeases(tempInputDir, Duration.ofMinutes(1), "other")) {
+            Assertions.assertTrue(otherHost.claim(ExtractorService.Archive.single(fileRar)), "Another host may have the password");
+            Assertions.assertTrue(otherHost.claim(ExtractorService.Archive.single(file7z)), "Another host may extract it");
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.underground.extractor.service;
+
+import com.underground.extractor.handler.AttemptResult;
+import com.underground.extractor.handler.ExtractionSettings;
+import com.underground.extractor.handler.IArchiveExtractor;
+import com.underground.extractor.handler.IAttemptSession;
+import com.underground.extractor.password.PasswordSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.File;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PasswordSearchTest {
+
+    @Mock
+    IArchiveExtractor archiveExtractor;
+    @Mock
+    IAttemptSession session;
+    private PasswordSearch search;
+    private final File archive = new File("archive.7z");
+    private final List<String> passwords = IntStream.range(0, 1000).mapToObj(i -> "pw" + i).toList();
+
+    @BeforeEach
+    void setUp() {
+        this.search = new PasswordSearch(archiveExtractor);
+    }
+
+    @Test
+    void givenCorrectPasswordInList_whenSearchWithWorkers_thenFoundAndOtherWorkersStop() throws Exception {
+        //GIVEN
+        when(archiveExtractor.openSession(archive, false, ExtractionSettings.DEFAULT)).thenReturn(session);
+        when(session.attempt(anyString())).thenAnswer(invocation -> {
+            if (invocation.getArgument(0).equals("pw5")) {
+                return AttemptResult.OK;
+            }
+            Thread.sleep(1);
+            return AttemptResult.WRONG_PASSWORD;
+        });
+
+        //WHEN
+        PasswordSearch.Result result = search.find(archive, false, PasswordSource.of(passwords), 4);
+
+        //THEN
+        assertEquals("pw5", result.password());
+        assertTrue(result.attempts() < passwords.size(), "Remaining workers should have been cancelled");
+    }
+
+    @Test
+    void givenNoCorrectPassword_whenSearchWithWorkers_thenEveryCandidateTriedOnce() throws Exception {
+        //GIVEN
+        when(archiveExtractor.openSession(archive, true, ExtractionSettings.DEFAULT)).thenReturn(session);
+        when(session.attempt(anyString())).thenReturn(AttemptResult.WRONG_PASSWORD);
+
+        //WHEN
+        PasswordSearch.Result result = search.find(archive, true, PasswordSource.of(passwords), 3);
+
+        //THEN
+        assertNull(result.password());
+        assertEquals(passwords.size(), result.attempts());
+        verify(archiveExtractor, times(3)).openSession(archive, true, ExtractionSettings.DEFAULT);
+        verify(session, times(3)).close();
+    }
+
+    @Test
+    void givenUnsupportedArchive_whenSearch_thenWorkerStopsEarly() throws Exception {
+        //GIVEN
+        when(archiveExtractor.openSession(archive, false, ExtractionSettings.DEFAULT)).thenReturn(session);
+        when(session.attempt(anyString())).thenReturn(AttemptResult.UNSUPPORTED);
+
+        //WHEN
+        PasswordSearch.Result result = search.find(archive, false, PasswordSource.of(passwords), 1);
+
+        //THEN
+        assertNull(result.password());
+        assertEquals(1, result.attempts());
+    }
+}
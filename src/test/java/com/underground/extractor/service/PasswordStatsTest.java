@@ -0,0 +1,58 @@
+package com.underground.extractor.service;
+
+import com.underground.extractor.password.PasswordSource;
+import com.underground.extractor.password.PrioritizedSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordStatsTest {
+
+    @TempDir
+    private Path dir;
+
+    @Test
+    void givenHits_whenRanked_thenSameFolderFirstThenSameNameThenOverall() {
+        //GIVEN
+        PasswordStats stats = PasswordStats.forRun();
+        stats.recordHit(new File("/other/backup_2021.7z"), "pattern");
+        stats.recordHit(new File("/other/misc.zip"), "overall");
+        stats.recordHit(new File("/other/misc2.zip"), "overall");
+        stats.recordHit(new File("/series/a.rar"), "folder");
+
+        //WHEN
+        List<String> ranked = stats.ranked(new File("/series/backup_2023.part1.rar"));
+
+        //THEN
+        assertEquals(List.of("folder", "pattern", "overall"), ranked);
+        assertEquals("backup_#", PasswordStats.namePattern("Backup_2023.part01.rar"));
+        assertEquals("show s#e#", PasswordStats.namePattern("show s01e02.7z.001"));
+    }
+
+    @Test
+    void givenStatsFile_whenSavedAndLoaded_thenHitsKeptAndPrioritizedWithoutDuplicates() throws Exception {
+        //GIVEN
+        String file = dir.resolve("stats.tsv").toString();
+        PasswordStats stats = PasswordStats.load(file);
+        stats.recordHit(new File(dir.toFile(), "a.zip"), "with\ttab");
+        stats.recordHit(new File(dir.toFile(), "b.zip"), "p2");
+        stats.recordHit(new File(dir.toFile(), "c.zip"), "p2");
+        stats.save();
+
+        //WHEN
+        List<String> ranked = PasswordStats.load(file).ranked(new File(dir.toFile(), "d.7z"));
+        var passwords = new PrioritizedSource(ranked, PasswordSource.of(List.of("p1", "p2", "p3", "with\ttab")));
+        List<String> candidates = new ArrayList<>();
+        passwords.forEach(candidates::add);
+
+        //THEN
+        assertEquals(List.of("p2", "with\ttab"), ranked);
+        assertEquals(List.of("p2", "with\ttab", "p1", "p3"), candidates);
+    }
+}
@@ -0,0 +1,132 @@
+package com.underground.extractor.volume;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VolumeSetsTest {
+
+    private final ClassLoader classLoader = getClass().getClassLoader();
+    @TempDir
+    private Path dir;
+
+    private File testFile(String name) {
+        return new File(classLoader.getResource("test_data/" + name).getFile());
+    }
+
+    private File create(String name, int size) throws Exception {
+        return Files.write(dir.resolve(name), new byte[size]).toFile();
+    }
+
+    private VolumeSets.VolumeSet set(VolumeSets.Index index, VolumeSets.Naming naming) {
+        return index.sets().stream().filter(set -> set.naming() == naming).findFirst().orElseThrow();
+    }
+
+    @Test
+    void givenRar5Volumes_whenCheckingEndOfArchive_thenOnlyTheLastIsLast() {
+        assertEquals(Boolean.FALSE, VolumeSets.isLastRar5Volume(testFile("single_file_inside.part01.rar")));
+        assertEquals(Boolean.TRUE, VolumeSets.isLastRar5Volume(testFile("single_file_inside.part02.rar")));
+    }
+
+    @Test
+    void givenTestData_whenIndexed_thenSetsCompleteAndSinglesSeparated() throws Exception {
+        //WHEN
+        VolumeSets.Index index = VolumeSets.index(testFile("single_file_inside.part01.rar").getParentFile().toPath(), 1);
+
+        //THEN
+        VolumeSets.VolumeSet rar = index.sets().stream()
+                .filter(set -> set.first().getName().equals("single_file_inside.part01.rar")).findFirst().orElseThrow();
+        assertEquals(VolumeSets.Completeness.COMPLETE, rar.completeness());
+        assertEquals(List.of(testFile("single_file_inside.part01.rar"), testFile("single_file_inside.part02.rar")), rar.volumes());
+        VolumeSets.VolumeSet sevenZip = index.sets().stream()
+                .filter(set -> set.first().getName().equals("single_file_inside.7z.001")).findFirst().orElseThrow();
+        assertEquals(VolumeSets.Completeness.COMPLETE, sevenZip.completeness());
+        assertTrue(index.singles().contains(testFile("encr_file_list-single_file.7z")));
+        assertTrue(index.sets().stream().flatMap(set -> set.volumes().stream()).noneMatch(index.singles()::contains));
+    }
+
+    @Test
+    void givenOldStyleRarAndSplitZip_whenIndexed_thenHeadsBelongToTheirSets() throws Exception {
+        //GIVEN
+        File rar = create("a.rar", 10);
+        File r00 = create("a.r00", 10);
+        File r01 = create("a.r01", 10);
+        File z01 = create("b.z01", 10);
+        File zip = create("b.zip", 10);
+        File single = create("c.zip", 10);
+        create("notes.txt", 1);
+
+        //WHEN
+        VolumeSets.Index index = VolumeSets.index(dir, 1);
+
+        //THEN
+        assertEquals(List.of(single), index.singles());
+        assertEquals(1, index.unsupported().size());
+        VolumeSets.VolumeSet oldRar = set(index, VolumeSets.Naming.OLD_RAR);
+        assertEquals(rar, oldRar.first());
+        assertEquals(List.of(rar, r00, r01), oldRar.volumes());
+        assertEquals(VolumeSets.Completeness.UNKNOWN, oldRar.completeness());
+        VolumeSets.VolumeSet splitZip = set(index, VolumeSets.Naming.SPLIT_ZIP);
+        assertEquals(zip, splitZip.first());
+        assertEquals(List.of(z01, zip), splitZip.volumes());
+        assertEquals(VolumeSets.Completeness.COMPLETE, splitZip.completeness());
+    }
+
+    @Test
+    void givenVolumesOfEveryNaming_whenFollowed_thenSetWalkedInOrder() throws Exception {
+        //GIVEN
+        File rar = create("a.rar", 10);
+        File r00 = create("a.r00", 10);
+        File z01 = create("b.z01", 10);
+        File z02 = create("b.z02", 10);
+        File zip = create("b.zip", 10);
+        File single = create("c.rar", 10);
+
+        //WHEN
+        File afterRar = VolumeSets.following(rar);
+        File afterR00 = VolumeSets.following(r00);
+        File afterZ01 = VolumeSets.following(z01);
+        File afterZ02 = VolumeSets.following(z02);
+
+        //THEN
+        assertEquals(r00, afterRar);
+        assertEquals(dir.resolve("a.r01").toFile(), afterR00, "The next one may still be missing");
+        assertEquals(z02, afterZ01);
+        assertEquals(zip, afterZ02, "The .zip comes after the last numbered volume");
+        assertNull(VolumeSets.following(zip));
+        assertNull(VolumeSets.following(single));
+        assertEquals(dir.resolve("d.part02.rar").toFile(), VolumeSets.following(dir.resolve("d.part01.rar").toFile()));
+    }
+
+    @Test
+    void givenMissingOrShortVolumes_whenIndexed_thenFlaggedIncomplete() throws Exception {
+        //GIVEN
+        create("gap.7z.001", 100);
+        create("gap.7z.003", 40);
+        create("short.zip.0001", 100);
+        create("short.zip.0002", 60);
+        create("short.zip.0003", 100);
+        create("head.r00", 10);
+        Files.copy(testFile("single_file_inside.part01.rar").toPath(), dir.resolve("cut.part1.rar"));
+
+        //WHEN
+        List<VolumeSets.VolumeSet> sets = VolumeSets.index(dir, 1).sets().stream()
+                .sorted(Comparator.comparing(set -> set.first().getName())).toList();
+
+        //THEN
+        assertEquals(4, sets.size());
+        sets.forEach(set -> assertEquals(VolumeSets.Completeness.INCOMPLETE, set.completeness(), set.first().getName()));
+        assertEquals("volumes after cut.part1.rar missing", sets.get(0).problem());
+        assertEquals("volume 2 of gap.7z missing", sets.get(1).problem());
+        assertEquals("head.rar missing", sets.get(2).problem());
+        assertEquals("head.rar", sets.get(2).first().getName(), "The set should be opened with the missing .rar once it arrives");
+        assertEquals("short.zip.0002 is incomplete", sets.get(3).problem());
+    }
+}